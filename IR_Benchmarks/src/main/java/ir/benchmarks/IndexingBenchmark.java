@@ -0,0 +1,55 @@
+package ir.benchmarks;
+
+import ir.prog1.IndexFiles;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full index build of a synthetic corpus, statistics included.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexingBenchmark {
+
+    @Param({"2000"})
+    public int documents;
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    private Path docsPath;
+    private Path indexPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        docsPath = SyntheticCorpus.write(documents, vocabulary);
+    }
+
+    @Setup(Level.Iteration)
+    public void newIndex() throws IOException {
+        indexPath = Files.createTempDirectory("benchmark-index");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteIndex() throws IOException {
+        SyntheticCorpus.delete(indexPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(docsPath);
+    }
+
+    @Benchmark
+    public void indexDocuments() throws IOException {
+        IndexFiles.indexDocuments(docsPath.toString(), indexPath.toString());
+    }
+}
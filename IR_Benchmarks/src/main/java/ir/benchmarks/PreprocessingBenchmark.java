@@ -0,0 +1,89 @@
+package ir.benchmarks;
+
+import ir.prog1.CorpusGenerator;
+import ir.prog1.DocumentPreProcessing;
+import ir.prog1.HTMLParser;
+import ir.prog1.ParsedPage;
+import ir.prog1.LuceneConstants;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleaning and analysis of one page, the per-document work of the indexer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PreprocessingBenchmark {
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    @Param({"500"})
+    public int words;
+
+    private String[] pages;
+    private String[] texts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CorpusGenerator corpus = SyntheticCorpus.newGenerator(256, vocabulary, words, 0.0);
+
+        pages = new String[256];
+        texts = new String[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = corpus.getPage(i);
+            texts[i] = HTMLParser.getCleanedContents(pages[i]);
+        }
+    }
+
+    @Benchmark
+    public String getCleanedContents() {
+        return HTMLParser.getCleanedContents(pages[next++ & (pages.length - 1)]);
+    }
+
+    // a page parsed twice, for its title and for its contents
+    @Benchmark
+    public void getTitleAndCleanedContents(Blackhole blackhole) {
+        String page = pages[next++ & (pages.length - 1)];
+        blackhole.consume(HTMLParser.getTitle(page));
+        blackhole.consume(HTMLParser.getCleanedContents(page));
+    }
+
+    // the same page parsed once for both, like the indexer does
+    @Benchmark
+    public ParsedPage parse() {
+        return HTMLParser.parse(pages[next++ & (pages.length - 1)]);
+    }
+
+    @Benchmark
+    public String dataPreProcessing() throws IOException {
+        return DocumentPreProcessing.dataPreProcessing(texts[next++ & (texts.length - 1)]);
+    }
+
+    // what the indexer does per page: parse once, then the writer's analyzer tokenizes the contents
+    @Benchmark
+    public int parseAndAnalyze() throws IOException {
+        ParsedPage page = HTMLParser.parse(pages[next++ & (pages.length - 1)]);
+
+        Analyzer analyzer = DocumentPreProcessing.getAnalyzer();
+        int tokens = 0;
+        try (TokenStream tokenStream = analyzer.tokenStream(LuceneConstants.FIELD_CONTENTS, page.getContents())) {
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens++;
+            }
+            tokenStream.end();
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,89 @@
+package ir.benchmarks;
+
+import ir.prog1.*;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring one query and collecting the top documents, queries of 1 to 3 terms are sampled
+ * from the index like the LoadGenerator does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+
+    @Param({"2000"})
+    public int documents;
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    private Path docsPath;
+    private Path indexPath;
+    private DirectoryReader indexReader;
+    private VSM vsm;
+    private BM25 bm25;
+    private List<HashMap<String, Integer>> queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        docsPath = SyntheticCorpus.write(documents, vocabulary);
+        indexPath = Files.createTempDirectory("benchmark-index");
+        IndexFiles.indexDocuments(docsPath.toString(), indexPath.toString());
+
+        // BM25 is loaded with the upper bounds, bm25 turns the pruning off per query
+        LuceneConstants.PRUNING = true;
+        indexReader = DirectoryReader.open(FSDirectory.open(indexPath));
+        vsm = VSM.loadStatistics(indexReader, indexPath.toString());
+        bm25 = BM25.loadStatistics(indexReader, indexPath.toString());
+        queries = LoadGenerator.sampleQueries(indexReader, 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        indexReader.close();
+        SyntheticCorpus.delete(indexPath);
+        SyntheticCorpus.delete(docsPath);
+    }
+
+    @Benchmark
+    public TopKCollector vectorSpace() throws IOException {
+        TopKCollector collector = new TopKCollector(LuceneConstants.RESULTS_COUNT);
+        vsm.collectTopDocuments(indexReader, queries.get(next++ & (queries.size() - 1)), collector);
+        collector.sort();
+        return collector;
+    }
+
+    @Benchmark
+    public TopKCollector bm25() throws IOException {
+        LuceneConstants.PRUNING = false;
+        return searchBm25();
+    }
+
+    // Block-Max WAND, see LuceneConstants.PRUNING
+    @Benchmark
+    public TopKCollector bm25Pruned() throws IOException {
+        LuceneConstants.PRUNING = true;
+        return searchBm25();
+    }
+
+    private TopKCollector searchBm25() throws IOException {
+        TopKCollector collector = new TopKCollector(LuceneConstants.RESULTS_COUNT);
+        bm25.collectTopDocuments(indexReader, queries.get(next++ & (queries.size() - 1)), collector);
+        collector.sort();
+        return collector;
+    }
+}
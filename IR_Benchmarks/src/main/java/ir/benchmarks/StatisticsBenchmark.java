@@ -0,0 +1,72 @@
+package ir.benchmarks;
+
+import ir.prog1.BM25;
+import ir.prog1.IndexFiles;
+import ir.prog1.IndexStatistics;
+import ir.prog1.LuceneConstants;
+import ir.prog1.VSM;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the models with calculateIDFandTF. With cold on, the statistics and the forward
+ * index are deleted first, so they are computed again from the index.
+ *
+ * The default corpus is small, run with -p documents=100000 for the build time of a large
+ * index (indexing the corpus takes a few minutes at that size).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+
+    @Param({"2000"})
+    public int documents;
+
+    @Param({"50000"})
+    public int vocabulary;
+
+    @Param({"true", "false"})
+    public boolean cold;
+
+    private Path docsPath;
+    private Path indexPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        docsPath = SyntheticCorpus.write(documents, vocabulary);
+        indexPath = Files.createTempDirectory("benchmark-index");
+        IndexFiles.indexDocuments(docsPath.toString(), indexPath.toString());
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteStatistics() throws IOException {
+        if (cold) {
+            Files.deleteIfExists(IndexStatistics.getStatisticsPath(indexPath.toString()));
+            Files.deleteIfExists(indexPath.resolve(LuceneConstants.FORWARD_INDEX_FILE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticCorpus.delete(indexPath);
+        SyntheticCorpus.delete(docsPath);
+    }
+
+    @Benchmark
+    public BM25 bm25CalculateIDFandTF() throws IOException {
+        return BM25.calculateIDFandTF(indexPath.toString());
+    }
+
+    @Benchmark
+    public VSM vsmCalculateIDFandTF() throws IOException {
+        return VSM.calculateIDFandTF(indexPath.toString());
+    }
+}
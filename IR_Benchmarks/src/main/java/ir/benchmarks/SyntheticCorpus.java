@@ -0,0 +1,68 @@
+package ir.benchmarks;
+
+import ir.prog1.CorpusGenerator;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Synthetic corpora of the benchmarks, made by CorpusGenerator with a fixed seed,
+ * so every run of a benchmark sees the same pages.
+ */
+public class SyntheticCorpus {
+
+    private static final long SEED = 42L;
+
+    /**
+     * @param documents number of pages
+     * @param vocabulary number of distinct words
+     * @param words mean number of words of a page
+     * @param wordsSigma sigma of the log-normal page length, 0 for pages of the same length
+     * @return generator of the pages
+     */
+    public static CorpusGenerator newGenerator(int documents, int vocabulary, int words, double wordsSigma) {
+        return new CorpusGenerator(documents, SEED, vocabulary, 1.0, words, wordsSigma, 0.9, 0.3, 10, 0.01);
+    }
+
+    /**
+     * Writes a corpus of pages of 400 words on average to a new temporary folder.
+     * @param documents number of pages
+     * @param vocabulary number of distinct words
+     * @return folder of the corpus
+     * @throws IOException if a page couldnot be written
+     */
+    public static Path write(int documents, int vocabulary) throws IOException {
+        Path folder = Files.createTempDirectory("benchmark-docs");
+        newGenerator(documents, vocabulary, 400, 0.8).write(folder);
+        return folder;
+    }
+
+    /**
+     * Deletes a folder and everything in it.
+     * @param folder folder
+     * @throws IOException if a file couldnot be deleted
+     */
+    public static void delete(Path folder) throws IOException {
+
+        if (!Files.exists(folder)) {
+            return;
+        }
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
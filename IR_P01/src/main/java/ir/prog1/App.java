@@ -29,6 +29,7 @@ public class App {
     /**
      * Driver Class
      * Call: java -jar IR P01.jar [path to document folder] [path to index folder] [VS/OK] [query]
+     * An existing index is updated incrementally, -Dindex.rebuild=true forces a full rebuild.
      * @param args arguments
      * @throws IOException if path value couldnot be read
      */
@@ -64,97 +65,56 @@ public class App {
             System.exit(1);
         }
 
-        // Check if user wants re-create the index or use the existing indexing folder.
-        boolean flag = true;
-        final Path indexDir = Paths.get(indexPath);
-        if (indexDir.toFile().exists()) {
+        // Create the index if there is none (or -Dindex.rebuild=true is given),
+        // otherwise update the existing index with the changes in the document folder.
+        Directory directory = FSDirectory.open(Paths.get(indexPath));
+        boolean rebuild = Boolean.getBoolean("index.rebuild") || !DirectoryReader.indexExists(directory);
 
-            System.out.println("Index folder Path already exists !");
-            Directory directory = FSDirectory.open(Paths.get(indexPath));
-            if(DirectoryReader.indexExists(directory) == true) {
-                System.out.println("Found indexing files. Reading from the IndexDirectory.");
-            }
-            System.out.print("Want to force re-create index directory ? (yes/no): ");
-
-            Scanner readInput = new Scanner(System.in);
-            String enterKey = readInput.nextLine();
-            if (enterKey.equalsIgnoreCase("yes") ||  enterKey.equalsIgnoreCase("y")) {
-                flag = true;
-            } else {
-                flag = false;
-            }
-        } else {
-            flag = true;
-        }
-
-        // based upon user-requests, create new indexing
-        if (flag == true) {
-            // Start the indexing process
-            Date start = new Date();
-            try {
+        // Start the indexing process
+        Date start = new Date();
+        try {
+            if (rebuild) {
                 System.out.println("Indexing to the directory '" + indexPath + "'...");
                 IndexFiles.indexDocuments(docsPath, indexPath);
-
-                Date end = new Date();
-                System.out.println("Took " + String.valueOf(end.getTime() - start.getTime()) + " total milliseconds for indexing.");
-
-            } catch (IOException e) {
-                e.printStackTrace();
+            } else {
+                System.out.println("Found indexing files. Updating the index in '" + indexPath + "'...");
+                IndexFiles.updateDocuments(docsPath, indexPath);
             }
 
-            System.out.println("\n");
+            Date end = new Date();
+            System.out.println("Took " + String.valueOf(end.getTime() - start.getTime()) + " total milliseconds for indexing.");
+
+        } catch (IOException e) {
+            e.printStackTrace();
         }
 
+        System.out.println("\n");
+
         // Start the Ranking process using given Model (VSM/Okapi BM25)
         System.out.println("Searching for : " + userQuery);
         if (model.equalsIgnoreCase("VS")) {
 
-            VSM vsm = new VSM(indexPath);
-            vsm.calculateIDFandTF(indexPath);
-            String query = DocumentPreProcessing.dataPreProcessing(userQuery);
-            HashMap<String, Integer> hashedQuery = Utils.makeQuery(query);
-
-            HashMap<String, Double> matchedDocument = new HashMap<>();
-            for (Map.Entry<String, HashMap<String, Integer>> document : vsm.documentTFMappings.entrySet()) {
-                String documentId = document.getKey();
-                HashMap<String, Integer> value = document.getValue();
+            HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(userQuery);
 
-                Set flattenUniqueTerms = vsm.getFlattenTerms(value, hashedQuery);
+            TopKCollector collector = new TopKCollector(LuceneConstants.RESULTS_OFFSET + LuceneConstants.RESULTS_COUNT);
+            try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+                VSM vsm = VSM.loadStatistics(indexReader, indexPath);
 
-                HashMap<String, Double> doc = vsm.createTFIDFDocumentQueryMatrix(flattenUniqueTerms, value);
-                HashMap<String, Double> q   = vsm.createTFIDFDocumentQueryMatrix(flattenUniqueTerms, hashedQuery);
-
-                double similarityScore = vsm.cosineSimilarity(doc, q);
-                if (similarityScore > 0.0) {
-                    Double score = similarityScore;
-                    score = Double.parseDouble(String.format("%.5f", score));
-                    matchedDocument.put(documentId, score);
-                }
+                // walk only the postings of the query terms
+                vsm.collectTopDocuments(indexReader, hashedQuery, collector);
             }
 
-            Utils.printRankedDocuments(indexPath, matchedDocument);
+            Utils.printRankedDocuments(indexPath, collector, LuceneConstants.RESULTS_OFFSET);
         } else if (model.equalsIgnoreCase("OK")) {
-            String query = DocumentPreProcessing.dataPreProcessing(userQuery);
-
-            BM25 bm25 = new BM25(indexPath);
-            bm25.calculateIDFandTF(indexPath);
-
-            HashMap<String, Integer> hashedQuery = Utils.makeQuery(query);
-            HashMap<String, Double> matchedDocument = new HashMap<>();
-            for (Map.Entry<String, HashMap<String, Integer>> document : bm25.documentTFMappings.entrySet()) {
-
-                String documentId = document.getKey();
-                HashMap<String, Integer> value = document.getValue();
-
-                double bm25Score = bm25.calculateBM25Score(value, hashedQuery);
+            HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(userQuery);
+            TopKCollector collector = new TopKCollector(LuceneConstants.RESULTS_OFFSET + LuceneConstants.RESULTS_COUNT);
+            try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+                BM25 bm25 = BM25.loadStatistics(indexReader, indexPath);
 
-                if (bm25Score > 0.0) {
-                    Double score = bm25Score;
-                    score = Double.parseDouble(String.format("%.5f", score));
-                    matchedDocument.put(documentId, score);
-                }
+                // walk only the postings of the query terms, skipping what can't make the top documents
+                bm25.collectTopDocuments(indexReader, hashedQuery, collector);
             }
-            Utils.printRankedDocuments(indexPath, matchedDocument);
+            Utils.printRankedDocuments(indexPath, collector, LuceneConstants.RESULTS_OFFSET);
         }
     }
 }
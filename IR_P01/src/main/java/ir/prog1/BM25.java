@@ -1,10 +1,14 @@
 package ir.prog1;
 
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Bits;
 
 import java.io.IOException;
 import java.nio.file.Paths;
@@ -12,166 +16,557 @@ import java.util.*;
 
 /**
  * Okapi BM25 model for ranked retrieval.
+ *
+ * A model is an immutable snapshot of one commit of the index, it can be shared by any
+ * number of query threads.
  */
 public class BM25 {
 
-    String indexPath = "";
-    HashMap<String, HashMap<String, Integer>> documentTFMappings;
-    HashMap<String, Double> invertedDictionary;
-    HashMap<String, Integer> documentFrequency;
-    double averageLength;
+    // IDF variants: log10(numDocs/totalTermFreq) from the course slides, Robertson/Sparck Jones
+    // log10((numDocs - df + 0.5)/(df + 0.5)) and Lucene's ln(1 + (numDocs - df + 0.5)/(df + 0.5))
+    static final int IDF_TTF = 0;
+    static final int IDF_RSJ = 1;
+    static final int IDF_LUCENE = 2;
+    private static final String[] IDF_VARIANTS = {"ttf", "rsj", "lucene"};
+
+    final ForwardIndex forwardIndex;
+    final double averageLength;
+    final IndexStatistics statistics;
+    final double k1;
+    final double b;
+    final int idfVariant;
+    final double contentsWeight;
+    final double titleWeight;
+    final double titleB;
 
     /**
-     * Initializes a new BM25 instance.
-     * @param indexPath index path
+     * Initializes a new BM25 instance with the parameters of LuceneConstants.
+     * @param statistics precomputed statistics of the index
+     * @param forwardIndex term frequencies per document, or null when only scoring postings
      */
-    public BM25(String indexPath) {
+    private BM25(IndexStatistics statistics, ForwardIndex forwardIndex) {
+        Preconditions.checkArgument(LuceneConstants.BM25_K1 >= 0.0, "k1 should not be negative.");
+        Preconditions.checkArgument(LuceneConstants.BM25_B >= 0.0 && LuceneConstants.BM25_B <= 1.0, "b should be between 0 and 1.");
+        Preconditions.checkArgument(LuceneConstants.BM25_TITLE_B >= 0.0 && LuceneConstants.BM25_TITLE_B <= 1.0,
+                "Title b should be between 0 and 1.");
+        Preconditions.checkArgument(LuceneConstants.BM25_CONTENTS_WEIGHT >= 0.0 && LuceneConstants.BM25_TITLE_WEIGHT >= 0.0,
+                "Field weights should not be negative.");
+
+        this.statistics = statistics;
+        this.forwardIndex = forwardIndex;
+        this.averageLength = statistics.getAverageLength();
+        this.k1 = LuceneConstants.BM25_K1;
+        this.b = LuceneConstants.BM25_B;
+        this.idfVariant = getIdfVariant(LuceneConstants.BM25_IDF);
+        this.contentsWeight = LuceneConstants.BM25_CONTENTS_WEIGHT;
+        this.titleWeight = LuceneConstants.BM25_TITLE_WEIGHT;
+        this.titleB = LuceneConstants.BM25_TITLE_B;
+    }
 
-        this.indexPath = indexPath;
-        this.documentTFMappings = new HashMap<>();
-        this.invertedDictionary = new HashMap<>();
-        this.documentFrequency = new HashMap<>();
-        this.averageLength = 0.0;
+    /**
+     * Memory-maps the precomputed statistics of the index (IDF, document lengths, average length)
+     * and makes a model scoring the postings of the given reader.
+     * The statistics are written by the indexer, they have to belong to the given reader. Without
+     * upper bounds for the configured parameters the model scores every document.
+     * @param indexReader reader of the index
+     * @param indexPath index path
+     * @return model for the reader
+     * @throws IOException if the index or the statistics couldnot be read
+     */
+    public static BM25 loadStatistics(DirectoryReader indexReader, String indexPath) throws IOException {
+        return new BM25(IndexStatistics.open(indexReader, indexPath), null);
     }
 
     /**
      * Calculates the IDF and TF for the documents indexed
      * @param indexPath indexing path
+     * @return model holding the term frequencies of every document
      * @throws IOException if path value couldnot be read
      */
-    public void calculateIDFandTF(String indexPath) throws IOException {
+    public static BM25 calculateIDFandTF(String indexPath) throws IOException {
+
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+
+            // IDF, the lengths and the average length come from the precomputed statistics, computed now if missing
+            IndexStatistics statistics = openOrWriteStatistics(indexReader, indexPath);
+
+            // frequencies are read in place from the memory-mapped forward index
+            ForwardIndex forwardIndex = ForwardIndex.open(indexReader, statistics, indexPath);
+
+            return new BM25(statistics, forwardIndex);
+        }
+    }
+
+    /**
+     * Memory-maps the statistics of the reader, writing them if they are missing. When pruning,
+     * the upper bounds have to be computed with the configured parameters, so the statistics are
+     * written again if they were computed with other ones.
+     * @param indexReader reader of the index
+     * @param indexPath index path
+     * @return statistics of the reader
+     * @throws IOException if the index or the statistics couldnot be read
+     */
+    private static IndexStatistics openOrWriteStatistics(DirectoryReader indexReader, String indexPath) throws IOException {
+        IndexStatistics statistics = IndexStatistics.openOrWrite(indexReader, indexPath);
+        if (LuceneConstants.PRUNING && !statistics.hasUpperBounds(LuceneConstants.BM25_K1, LuceneConstants.BM25_B,
+                getIdfVariant(LuceneConstants.BM25_IDF))) {
+            statistics = IndexStatistics.write(indexReader, indexPath);
+        }
+        return statistics;
+    }
+
+    /**
+     * @param name name of the IDF variant: ttf, rsj or lucene
+     * @return IDF variant
+     */
+    static int getIdfVariant(String name) {
+        for (int i = 0; i < IDF_VARIANTS.length; i++) {
+            if (IDF_VARIANTS[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("IDF variant should be one of " + Arrays.toString(IDF_VARIANTS) + ": " + name);
+    }
+
+    /**
+     * Inverse document frequency of a term
+     * @param idfVariant IDF variant
+     * @param numDocs number of documents
+     * @param docFreq number of documents containing the term
+     * @param totalTermFreq number of occurrences of the term
+     * @return idf
+     */
+    static double getInverseDocumentFrequency(int idfVariant, int numDocs, long docFreq, long totalTermFreq) {
+        switch (idfVariant) {
+            case IDF_RSJ:
+                return Math.log10((numDocs - docFreq + 0.5) / (docFreq + 0.5));
+            case IDF_LUCENE:
+                return Math.log(1.0 + (numDocs - docFreq + 0.5) / (docFreq + 0.5));
+            default:
+                return Math.log10((double) numDocs / (double) totalTermFreq);
+        }
+    }
+
+    /**
+     * Inverse document frequency of the term with the given ordinal, with the IDF variant of the model
+     * @param ordinal ordinal of the term
+     * @return idf
+     */
+    public double getInverseDocumentFrequency(int ordinal) {
+        if (idfVariant == IDF_TTF) {
+            return this.statistics.getInverseDocumentFrequency(ordinal);
+        }
+
+        return getInverseDocumentFrequency(idfVariant, this.statistics.getNumDocs(),
+                this.statistics.getDocumentFrequency(ordinal), 0L);
+    }
+
+    /**
+     * Inverse document frequency of the term, with the IDF variant of the model
+     * @param term term
+     * @return idf, or 0.0 if the term is not in the dictionary
+     */
+    public double getInverseDocumentFrequency(String term) {
+        int ordinal = this.statistics.getTermOrdinal(term);
+        return ordinal < 0 ? 0.0 : getInverseDocumentFrequency(ordinal);
+    }
 
-        Directory directory = FSDirectory.open(Paths.get(indexPath));
-        IndexReader indexReader = DirectoryReader.open(directory);
+    /**
+     * @return true if the title is scored too (BM25F)
+     */
+    public boolean isFielded() {
+        return titleWeight > 0.0;
+    }
 
-        long sumTf = 0;
-        int numberOfdocs = indexReader.numDocs();
-        for (int docId = 0; docId < numberOfdocs; docId++) {
+    /**
+     * Calculates the BM25 score for the query and a document of the forward index
+     * @param docId id of the document
+     * @param q query
+     * @return score
+     */
+    public double calculateBM25Score(int docId, Map<String, Integer> q) {
+
+        Preconditions.checkState(this.forwardIndex != null, "Term frequencies are only loaded by calculateIDFandTF.");
 
-            Terms termVector = indexReader.getTermVector(docId, LuceneConstants.FIELD_CONTENTS);
-            if (termVector == null) {
-                // System.out.println("No Term Vector Found");
+        double result = 0.0;
+        double documentLength = this.statistics.getDocumentLength(docId);
+        for (String query : q.keySet()) {
+            int ordinal = this.statistics.getTermOrdinal(query);
+            if (ordinal < 0) {
                 continue;
             }
-            Document document = indexReader.document(docId);
-            String documentContent = new String(document.get(LuceneConstants.FIELD_CONTENTS));
-            String documentID = new String(document.get(LuceneConstants.FIELD_ID));
 
-            // System.out.println("Doc:: " + documentID + ", Content: " + documentContent);
+            int termFrequency = this.forwardIndex.getTermFrequency(docId, ordinal);
+            result += getTermScore(this.getInverseDocumentFrequency(ordinal), termFrequency,
+                    documentLength, this.averageLength, this.k1, this.b);
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculates the BM25 score of the query for every document, term-at-a-time.
+     * Only the postings of the query terms are visited and the partial scores are
+     * accumulated per docID, so the cost grows with the posting-list lengths of the
+     * query terms and not with the collection size.
+     * @param indexReader index reader
+     * @param q query
+     * @return mapping of docID and score for the documents containing any query term
+     * @throws IOException if the index couldnot be read
+     */
+    public HashMap<Integer, Double> calculateBM25Scores(IndexReader indexReader, HashMap<String, Integer> q) throws IOException {
 
-            TermsEnum iterator = termVector.iterator();
-            BytesRef term = null;
-            List<String> terms = new ArrayList<>();
-            while ((term = iterator.next()) != null) {
+        double averageLength = this.statistics.getAverageLength();
 
-                try {
-                    String termText = term.utf8ToString();
-                    Term termInstance = new Term(LuceneConstants.FIELD_CONTENTS, term);
-                    long totalTermFreq = indexReader.totalTermFreq(termInstance);
-                    int termFrequency = this.getTermFrequency(documentContent.trim(), termText);
-                    terms.add(termText);
+        HashMap<Integer, Double> accumulators = new HashMap<>();
+        for (String query : q.keySet()) {
 
-                    Double idf = Math.log10((double)numberOfdocs/(double)totalTermFreq);
-                    if(!invertedDictionary.containsKey(term)) {
-                        invertedDictionary.put(termText, idf);
+            if (!this.statistics.containsTerm(query)) {
+                // term is not in the dictionary, it contributes nothing
+                continue;
+            }
+            double inverseDocumentFrequency = this.getInverseDocumentFrequency(query);
+
+            Term termInstance = new Term(LuceneConstants.FIELD_CONTENTS, query);
+            for (LeafReaderContext leaf : indexReader.leaves()) {
+                PostingsEnum postings = leaf.reader().postings(termInstance, PostingsEnum.FREQS);
+                if (postings == null) {
+                    continue;
+                }
+
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                int doc;
+                while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
                     }
 
-                    sumTf += termFrequency;
+                    int docId = leaf.docBase + doc;
+                    double documentLength = this.statistics.getDocumentLength(docId);
 
-                    // System.out.println("doc:" + docId + ", term: " + termText + ", TotalTermFreq = " + totalTermFreq);
-                } catch (Exception e) {
-                    e.printStackTrace();
+                    double score = getTermScore(inverseDocumentFrequency, postings.freq(), documentLength, averageLength,
+                            this.k1, this.b);
+                    Double accumulated = accumulators.get(docId);
+                    accumulators.put(docId, accumulated == null ? score : accumulated + score);
                 }
             }
-            HashMap<String, Integer> termFrequency = Utils.getTermFrequencyOfEachWord(documentContent.trim(), terms);
-            this.documentTFMappings.put(documentID, termFrequency);
         }
-        this.calculateAverageLength(sumTf, numberOfdocs);
+
+        return accumulators;
     }
 
     /**
-     * Calculates the Average Length of the Document
-     * @param totalTermFrequency total Term Frequency
-     * @param numberOfDocs total number of documents
+     * Calculates the BM25F score of the query for every document, term-at-a-time.
+     * The frequencies of a term in the contents and in the title are normalized by the length
+     * of their field, weighted and added up before the k1 saturation, in a single pass over the
+     * postings of both fields. Terms only found in titles get their IDF from the title field.
+     * @param indexReader index reader
+     * @param q query
+     * @return mapping of docID and score for the documents containing any query term
+     * @throws IOException if the index couldnot be read
      */
-    public void calculateAverageLength(long totalTermFrequency, int numberOfDocs) {
+    public HashMap<Integer, Double> calculateBM25FScores(IndexReader indexReader, HashMap<String, Integer> q) throws IOException {
+
+        HashMap<Integer, Double> accumulators = new HashMap<>();
+        for (String query : q.keySet()) {
+
+            double inverseDocumentFrequency;
+            int ordinal = this.statistics.getTermOrdinal(query);
+            if (ordinal >= 0) {
+                inverseDocumentFrequency = this.getInverseDocumentFrequency(ordinal);
+            } else {
+                Term titleTerm = new Term(LuceneConstants.FIELD_TITLE, query);
+                long docFreq = indexReader.docFreq(titleTerm);
+                inverseDocumentFrequency = docFreq == 0 ? 0.0 : getInverseDocumentFrequency(this.idfVariant,
+                        this.statistics.getNumDocs(), docFreq, indexReader.totalTermFreq(titleTerm));
+            }
+            if (inverseDocumentFrequency == 0.0) {
+                // the term contributes nothing
+                continue;
+            }
+
+            // weighted and length normalized frequency of the term per docID
+            HashMap<Integer, Double> frequencies = new HashMap<>();
+            addFieldFrequencies(indexReader, query, false, this.contentsWeight, this.b,
+                    this.statistics.getAverageLength(), frequencies);
+            addFieldFrequencies(indexReader, query, true, this.titleWeight, this.titleB,
+                    this.statistics.getAverageTitleLength(), frequencies);
+
+            for (Map.Entry<Integer, Double> entry : frequencies.entrySet()) {
+                double frequency = entry.getValue();
+                double score = inverseDocumentFrequency * (this.k1 + 1.0) * frequency / (this.k1 + frequency);
+                Double accumulated = accumulators.get(entry.getKey());
+                accumulators.put(entry.getKey(), accumulated == null ? score : accumulated + score);
+            }
+        }
 
-        double averageLength = (double) totalTermFrequency / (double) numberOfDocs;
-        this.averageLength = averageLength;
+        return accumulators;
     }
 
     /**
-     * Given a document it calculates the number of given term in the document
-     * @param document a document
-     * @param term a term
-     * @return number of term in the document
+     * Adds the weighted, length normalized frequencies of the term in one field
+     * @param indexReader index reader
+     * @param term term
+     * @param title true for the title field, false for the contents field
+     * @param weight weight of the field
+     * @param fieldB length normalization of the field
+     * @param averageFieldLength average length of the field
+     * @param frequencies frequencies per docID
+     * @throws IOException if the index couldnot be read
      */
-    public int getTermFrequency(String document, String term) {
-        int termFrequency = 0;
-        String[] tokens = document.split(" ");
-        for (String token : tokens) {
-            if (term.equalsIgnoreCase(token)) {
-                termFrequency ++;
+    private void addFieldFrequencies(IndexReader indexReader, String term, boolean title, double weight, double fieldB,
+                                     double averageFieldLength, HashMap<Integer, Double> frequencies) throws IOException {
+
+        if (weight == 0.0 || averageFieldLength == 0.0) {
+            return;
+        }
+
+        Term termInstance = new Term(title ? LuceneConstants.FIELD_TITLE : LuceneConstants.FIELD_CONTENTS, term);
+        for (LeafReaderContext leaf : indexReader.leaves()) {
+            PostingsEnum postings = leaf.reader().postings(termInstance, PostingsEnum.FREQS);
+            if (postings == null) {
+                continue;
+            }
+
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            int doc;
+            while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+
+                int docId = leaf.docBase + doc;
+                double fieldLength = title ? this.statistics.getTitleLength(docId) : this.statistics.getDocumentLength(docId);
+                double frequency = weight * postings.freq() / ((1.0 - fieldB) + fieldB * (fieldLength / averageFieldLength));
+                Double accumulated = frequencies.get(docId);
+                frequencies.put(docId, accumulated == null ? frequency : accumulated + frequency);
             }
         }
-        return termFrequency;
     }
 
     /**
-     * Calculates the length of the document
-     * @param document document
-     * @return document length
+     * Lucene query matching the documents that contain any query term, to be scored with
+     * OkapiSimilarity. BM25 doesn't weight the query terms, every term is a clause once.
+     * @param q query
+     * @return query
      */
-    public double getDocumentLength(HashMap<String, Integer> document) {
-        double sum = 0;
-        for(Map.Entry<String, Integer> entry : document.entrySet()) {
-            sum += entry.getValue();
-        }
+    public static Query createQuery(Map<String, Integer> q) {
 
-        return (double) sum;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String query : q.keySet()) {
+            builder.add(new TermQuery(new Term(LuceneConstants.FIELD_CONTENTS, query)), BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
     }
 
     /**
-     * Calculates the BM25 score for the query and the document
-     * @param document document
+     * Collects the documents with the best BM25 scores for the query.
+     * With pruning on, the query terms are walked document-at-a-time (Block-Max WAND):
+     * a document is only scored when the upper bounds of the terms that can match it,
+     * for the whole index and then for its block of docIDs, beat the worst collected score.
+     * The other postings are skipped, so the total hits become a lower bound.
+     * The top documents and their scores are the same as with calculateBM25Scores.
+     * With native scoring on, the query is run by an IndexSearcher with OkapiSimilarity instead,
+     * the scores are then rounded to float. With BM25F, see calculateBM25FScores, every posting
+     * of the query terms is scored.
+     * @param indexReader index reader
      * @param q query
-     * @return score
+     * @param collector collector of the best documents
+     * @throws IOException if the index couldnot be read
      */
-    public double calculateBM25Score(HashMap<String, Integer> document, HashMap<String, Integer> q) {
+    public void collectTopDocuments(IndexReader indexReader, HashMap<String, Integer> q, TopKCollector collector) throws IOException {
 
-        // Calculations from, Slide: IR05_ProbabilisticModel, Page, 55
-        // query q
-        List<String> queries = new ArrayList<>();
-        for(Map.Entry<String, Integer> entry : q.entrySet()) {
-            queries.add(entry.getKey());
+        if (isFielded()) {
+            for (Map.Entry<Integer, Double> document : this.calculateBM25FScores(indexReader, q).entrySet()) {
+                if (document.getValue() > 0.0) {
+                    collector.collect(document.getKey(), document.getValue());
+                }
+            }
+            return;
         }
 
-        double result = 0.0;
+        if (LuceneConstants.NATIVE_SCORING) {
+            IndexSearcher searcher = new IndexSearcher(indexReader);
+            searcher.setSimilarity(new OkapiSimilarity(this));
+            Utils.collectTopDocuments(searcher, createQuery(q), collector);
+            return;
+        }
 
-        // calculate the BM25 TF
-        double k1 = 1.2;
-        double b  = 0.75;
-        double documentLength = this.getDocumentLength(document);
-        // Iterate over the terms in Query
-        for (String query : queries) {
-            int termFrequency = 0;
-            double inverseDocumentFrequency = 0.0;
-            if (document.containsKey(query)) {
-                termFrequency = document.get(query);
+        // the upper bounds only hold for the parameters they were computed with
+        if (!LuceneConstants.PRUNING || !this.statistics.hasUpperBounds(this.k1, this.b, this.idfVariant)) {
+            for (Map.Entry<Integer, Double> document : this.calculateBM25Scores(indexReader, q).entrySet()) {
+                if (document.getValue() > 0.0) {
+                    collector.collect(document.getKey(), document.getValue());
+                }
             }
+            return;
+        }
 
-            if (this.invertedDictionary.containsKey(query)) {
-                inverseDocumentFrequency = invertedDictionary.get(query);
+        // terms known to the dictionary, in the order calculateBM25Scores adds them up
+        List<String> terms = new ArrayList<>();
+        List<Integer> ordinals = new ArrayList<>();
+        for (String query : q.keySet()) {
+            int ordinal = this.statistics.getTermOrdinal(query);
+            if (ordinal >= 0) {
+                terms.add(query);
+                ordinals.add(ordinal);
             }
+        }
 
-            double numerator = (k1 + 1.0) * termFrequency;
-            double denominator = k1 * ((1.0 - b) + b * (documentLength / this.averageLength)) + termFrequency;
-            double TF = numerator / denominator;
+        boolean skipped = false;
+        double[] termScores = new double[terms.size()];
+        for (LeafReaderContext leaf : indexReader.leaves()) {
+
+            TermCursor[] cursors = new TermCursor[terms.size()];
+            int size = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                PostingsEnum postings = leaf.reader().postings(new Term(LuceneConstants.FIELD_CONTENTS, terms.get(i)), PostingsEnum.FREQS);
+                if (postings != null && postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    int ordinal = ordinals.get(i);
+                    cursors[size++] = new TermCursor(i, ordinal, postings, this.getInverseDocumentFrequency(ordinal),
+                            this.statistics.getMaxScore(ordinal));
+                }
+            }
 
-            result += inverseDocumentFrequency * TF;
+            skipped |= collectTopDocuments(leaf, cursors, size, termScores, collector);
         }
 
-        return result;
+        if (skipped) {
+            collector.setTotalHitsLowerBound();
+        }
+    }
+
+    /**
+     * Block-Max WAND over the postings of one segment
+     * @param leaf segment
+     * @param cursors postings of the query terms, positioned on their first document
+     * @param size number of cursors
+     * @param termScores scratch space, one entry per query term
+     * @param collector collector of the best documents
+     * @return true if documents were skipped
+     * @throws IOException if the index couldnot be read
+     */
+    private boolean collectTopDocuments(LeafReaderContext leaf, TermCursor[] cursors, int size, double[] termScores,
+                                        TopKCollector collector) throws IOException {
+
+        Bits liveDocs = leaf.reader().getLiveDocs();
+        int blockSize = this.statistics.getBlockSize();
+        boolean skipped = false;
+
+        sortByDocument(cursors, size);
+        while (true) {
+            // only positive scores are collected
+            double threshold = Math.max(0.0, collector.getMinCompetitiveScore());
+
+            // pivot: first cursor where the upper bounds of the cursors so far beat the threshold,
+            // no document before the pivot document can make it
+            double upperBound = 0.0;
+            int pivot = -1;
+            for (int i = 0; i < size && cursors[i].doc != DocIdSetIterator.NO_MORE_DOCS; i++) {
+                upperBound += cursors[i].maxScore;
+                if (upperBound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = cursors[pivot].doc;
+            while (pivot + 1 < size && cursors[pivot + 1].doc == pivotDoc) {
+                pivot++;
+            }
+            int docId = leaf.docBase + pivotDoc;
+
+            // same check with the upper bounds of the block of the pivot document
+            double blockUpperBound = 0.0;
+            for (int i = 0; i <= pivot; i++) {
+                blockUpperBound += Math.max(0.0, this.statistics.getBlockMaxScore(cursors[i].ordinal, docId));
+            }
+            if (blockUpperBound <= threshold) {
+                // nothing in this block before the next cursor can make it
+                int target = (docId / blockSize + 1) * blockSize - leaf.docBase;
+                if (pivot + 1 < size && cursors[pivot + 1].doc < target) {
+                    target = cursors[pivot + 1].doc;
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    if (cursors[i].doc < target) {
+                        cursors[i].doc = cursors[i].postings.advance(target);
+                    }
+                }
+                skipped = true;
+            } else if (cursors[0].doc == pivotDoc) {
+                // every cursor up to the pivot is on the pivot document, score it
+                if (liveDocs == null || liveDocs.get(pivotDoc)) {
+                    double documentLength = this.statistics.getDocumentLength(docId);
+                    Arrays.fill(termScores, 0.0);
+                    for (int i = 0; i <= pivot; i++) {
+                        termScores[cursors[i].index] = getTermScore(cursors[i].idf, cursors[i].postings.freq(),
+                                documentLength, this.averageLength, this.k1, this.b);
+                    }
+
+                    double score = 0.0;
+                    for (double termScore : termScores) {
+                        score += termScore;
+                    }
+                    if (score > 0.0) {
+                        collector.collect(docId, score);
+                    }
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    cursors[i].doc = cursors[i].postings.nextDoc();
+                }
+            } else {
+                // move the cursors before the pivot up to the pivot document
+                for (int i = 0; i < pivot && cursors[i].doc < pivotDoc; i++) {
+                    cursors[i].doc = cursors[i].postings.advance(pivotDoc);
+                }
+                skipped = true;
+            }
+
+            sortByDocument(cursors, size);
+        }
+
+        return skipped;
+    }
+
+    /**
+     * Insertion sort of the cursors by their current document, queries have a few terms
+     * @param cursors cursors
+     * @param size number of cursors
+     */
+    private static void sortByDocument(TermCursor[] cursors, int size) {
+        for (int i = 1; i < size; i++) {
+            TermCursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].doc > cursor.doc) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+    }
+
+    /**
+     * Calculates the BM25 contribution of a single term
+     * @param inverseDocumentFrequency idf of the term
+     * @param termFrequency frequency of the term in the document
+     * @param documentLength length of the document
+     * @param averageLength average length of the documents
+     * @param k1 term frequency saturation
+     * @param b length normalization
+     * @return score
+     */
+    static double getTermScore(double inverseDocumentFrequency, int termFrequency,
+                               double documentLength, double averageLength, double k1, double b) {
+
+        // Calculations from, Slide: IR05_ProbabilisticModel, Page, 55
+        double numerator = (k1 + 1.0) * termFrequency;
+        double denominator = k1 * ((1.0 - b) + b * (documentLength / averageLength)) + termFrequency;
+        double TF = numerator / denominator;
+
+        return inverseDocumentFrequency * TF;
     }
 
     /*public static void main(String... args) throws IOException {
@@ -199,4 +594,26 @@ public class BM25 {
         }
         Utils.printRankedDocuments(indexPath, matchedDocument);
     }*/
+
+    /**
+     * Position of a query term in its postings, with the term's upper bound.
+     */
+    private static final class TermCursor {
+
+        private final int index;
+        private final int ordinal;
+        private final double idf;
+        private final double maxScore;
+        private final PostingsEnum postings;
+        private int doc;
+
+        TermCursor(int index, int ordinal, PostingsEnum postings, double idf, double maxScore) {
+            this.index = index;
+            this.ordinal = ordinal;
+            this.idf = idf;
+            this.maxScore = Math.max(0.0, maxScore);
+            this.postings = postings;
+            this.doc = postings.docID();
+        }
+    }
 }
@@ -0,0 +1,355 @@
+package ir.prog1;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates deterministic synthetic HTML corpora for scale testing, without network access.
+ *
+ * Words are drawn from a generated vocabulary with a Zipf distribution, page lengths follow a
+ * log-normal distribution and pages link to their neighbours and to a Zipf-distributed set of
+ * popular pages. Some pages have no title, or only an og:title, and some links are broken.
+ * Every page is generated from its own seed, the same parameters always give the same corpus.
+ *
+ * Pages are written as [output folder]/NNNN/pageN.html, 1000 pages per folder, which is the layout
+ * IndexFiles indexes. Links are relative, so the folder also is a site the crawler of IR_P02 can
+ * crawl from [output folder]/index.html once it is served over HTTP on the loopback address.
+ *
+ * Call: java -cp IR_P01.jar ir.prog1.CorpusGenerator [output folder] [number of pages]
+ *       java -cp IR_P01.jar ir.prog1.CorpusGenerator serve [corpus folder]
+ */
+public class CorpusGenerator {
+
+    private static final int PAGES_PER_FOLDER = 1000;
+    private static final int MAX_WORDS = 100000;
+    private static final String CONSONANTS = "bcdfghjklmnprstvwz";
+    private static final String VOWELS = "aeiou";
+
+    private final int pages;
+    private final long seed;
+    private final int meanWords;
+    private final double wordsSigma;
+    private final double titleRate;
+    private final double ogTitleRate;
+    private final double meanLinks;
+    private final double brokenLinkRate;
+
+    private final String[] vocabulary;
+    private final ZipfDistribution words;
+    private final ZipfDistribution popularPages;
+
+    /**
+     * Initializes a new CorpusGenerator instance.
+     * @param pages number of pages
+     * @param seed seed of the corpus
+     * @param vocabularySize number of distinct words
+     * @param zipf exponent of the Zipf distribution of the words and of the popular pages
+     * @param meanWords mean number of words of a page body
+     * @param wordsSigma sigma of the log-normal page length, 0 for pages of the same length
+     * @param titleRate fraction of the pages with a title tag
+     * @param ogTitleRate fraction of the pages with an og:title meta tag
+     * @param meanLinks mean number of links of a page
+     * @param brokenLinkRate fraction of the links to missing pages
+     */
+    public CorpusGenerator(int pages, long seed, int vocabularySize, double zipf, int meanWords, double wordsSigma,
+                           double titleRate, double ogTitleRate, double meanLinks, double brokenLinkRate) {
+        Preconditions.checkArgument(pages > 0, "Number of pages should be positive.");
+        Preconditions.checkArgument(vocabularySize > 0, "Vocabulary size should be positive.");
+        Preconditions.checkArgument(zipf >= 0.0, "Zipf exponent should not be negative.");
+        Preconditions.checkArgument(meanWords > 0 && wordsSigma >= 0.0, "Page length should be positive.");
+        Preconditions.checkArgument(meanLinks >= 0.0, "Mean number of links should not be negative.");
+
+        this.pages = pages;
+        this.seed = seed;
+        this.meanWords = meanWords;
+        this.wordsSigma = wordsSigma;
+        this.titleRate = titleRate;
+        this.ogTitleRate = ogTitleRate;
+        this.meanLinks = meanLinks;
+        this.brokenLinkRate = brokenLinkRate;
+
+        Random random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = newWord(random);
+        }
+        this.words = new ZipfDistribution(vocabularySize, zipf);
+        this.popularPages = new ZipfDistribution(pages, zipf);
+    }
+
+    /**
+     * Initializes a new CorpusGenerator instance with the parameters of LuceneConstants.
+     * @param pages number of pages
+     */
+    public CorpusGenerator(int pages) {
+        this(pages, LuceneConstants.CORPUS_SEED, LuceneConstants.CORPUS_VOCABULARY, LuceneConstants.CORPUS_ZIPF,
+                LuceneConstants.CORPUS_WORDS, LuceneConstants.CORPUS_WORDS_SIGMA, LuceneConstants.CORPUS_TITLE_RATE,
+                LuceneConstants.CORPUS_OG_TITLE_RATE, LuceneConstants.CORPUS_LINKS, LuceneConstants.CORPUS_BROKEN_LINK_RATE);
+    }
+
+    /**
+     * @param id id of a page
+     * @return path of the page relative to the output folder
+     */
+    public static String getPagePath(int id) {
+        return String.format("%04d/page%d.html", id / PAGES_PER_FOLDER, id);
+    }
+
+    /**
+     * Generates a page, the same id always gives the same page
+     * @param id id of the page
+     * @return HTML page
+     */
+    public String getPage(int id) {
+        Preconditions.checkArgument(id >= 0 && id < pages, "Page id should be between 0 and " + pages + ": " + id);
+
+        Random random = new Random(seed * 0x9E3779B97F4A7C15L + id);
+        StringBuilder html = new StringBuilder(meanWords * 8);
+
+        html.append("<!DOCTYPE html>\n<html><head>");
+        String title = nextWords(random, 2 + random.nextInt(5));
+        if (random.nextDouble() < titleRate) {
+            html.append("<title>").append(title).append("</title>");
+        }
+        if (random.nextDouble() < ogTitleRate) {
+            html.append("<meta property=\"og:title\" content=\"").append(title).append("\">");
+        }
+        html.append("</head>\n<body>\n<h1>").append(title).append("</h1>\n<p>");
+
+        // log-normal length with the configured mean
+        double mu = Math.log(meanWords) - wordsSigma * wordsSigma / 2.0;
+        int length = (int) Math.min(MAX_WORDS, Math.max(1, Math.round(Math.exp(mu + wordsSigma * random.nextGaussian()))));
+        int links = nextPoisson(random, meanLinks);
+
+        for (int i = 0; i < length; i++) {
+            html.append(vocabulary[words.sample(random)]);
+
+            // links at random positions, about links of them per page
+            if (links > 0 && random.nextInt(length) < links) {
+                html.append(" <a href=\"").append(nextLink(random, id)).append("\">")
+                        .append(nextWords(random, 1 + random.nextInt(3))).append("</a>");
+            }
+
+            int separator = random.nextInt(100);
+            if (i == length - 1) {
+                html.append('.');
+            } else if (separator < 2) {
+                html.append(".</p>\n<p>");
+            } else if (separator < 3) {
+                html.append(" &amp; ");
+            } else if (separator < 4) {
+                html.append("<br>");
+            } else if (separator < 10) {
+                html.append(", ");
+            } else if (separator < 16) {
+                html.append(". ");
+            } else {
+                html.append(' ');
+            }
+        }
+        html.append("</p>\n</body></html>\n");
+
+        return html.toString();
+    }
+
+    /**
+     * Writes the pages and an index.html, linking to the first page of every folder, to the folder.
+     * @param folder output folder
+     * @throws IOException if a page couldnot be written
+     */
+    public void write(Path folder) throws IOException {
+
+        Files.createDirectories(folder);
+        for (int id = 0; id < pages; id++) {
+            Path page = folder.resolve(getPagePath(id));
+            if (id % PAGES_PER_FOLDER == 0) {
+                Files.createDirectories(page.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(page, StandardCharsets.UTF_8)) {
+                writer.write(getPage(id));
+            }
+
+            if ((id + 1) % 100000 == 0) {
+                System.out.println("Generated " + (id + 1) + " pages.");
+            }
+        }
+
+        // entry point of the site for the crawler
+        StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><title>Synthetic corpus</title></head>\n<body>\n");
+        for (int id = 0; id < pages; id += PAGES_PER_FOLDER) {
+            html.append("<a href=\"").append(getPagePath(id)).append("\">").append(id).append("</a>\n");
+        }
+        html.append("</body></html>\n");
+        Files.write(folder.resolve("index.html"), html.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Serves the files of the folder on the loopback address.
+     * @param folder corpus folder
+     * @param port port to listen on
+     * @return started server
+     * @throws IOException if the port couldnot be bound
+     */
+    public static HttpServer serve(Path folder, int port) throws IOException {
+
+        final Path root = folder.toAbsolutePath().normalize();
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    String path = exchange.getRequestURI().getPath();
+                    Path file = root.resolve(path.substring(1)).normalize();
+                    if (path.endsWith("/")) {
+                        file = file.resolve("index.html");
+                    }
+
+                    // nothing outside of the folder
+                    if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+                        byte[] body = "Not found.\n".getBytes(StandardCharsets.UTF_8);
+                        exchange.sendResponseHeaders(404, body.length);
+                        try (OutputStream output = exchange.getResponseBody()) {
+                            output.write(body);
+                        }
+                        return;
+                    }
+
+                    byte[] body = Files.readAllBytes(file);
+                    exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(body);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        httpServer.start();
+
+        return httpServer;
+    }
+
+    private String nextWords(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(vocabulary[words.sample(random)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Link to a neighbour page, a popular page or a missing page, relative to the folder of the page
+     * @param random random of the page
+     * @param id id of the page
+     * @return relative link
+     */
+    private String nextLink(Random random, int id) {
+        if (random.nextDouble() < brokenLinkRate) {
+            return "../missing/page" + random.nextInt(pages) + ".html";
+        }
+
+        int target;
+        if (random.nextBoolean()) {
+            target = Math.floorMod(id + random.nextInt(101) - 50, pages);
+        } else {
+            // popular pages are spread over the corpus, the multiplier is prime
+            target = (int) ((popularPages.sample(random) * 2654435761L) % pages);
+        }
+        return "../" + getPagePath(target);
+    }
+
+    private static int nextPoisson(Random random, double mean) {
+        // Knuth, the means used here are small
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private static String newWord(Random random) {
+        // 2 to 4 syllables and a final consonant, pronounceable like real terms
+        int syllables = 2 + random.nextInt(3);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+            word.append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+        }
+        word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+        return word.toString();
+    }
+
+    /**
+     * Driver Class
+     * Call: java -cp IR_P01.jar ir.prog1.CorpusGenerator [output folder] [number of pages]
+     *       java -cp IR_P01.jar ir.prog1.CorpusGenerator serve [corpus folder]
+     * @param args arguments
+     * @throws IOException if the corpus couldnot be written or served
+     */
+    public static void main(String... args) throws IOException {
+
+        if (args.length != 2) {
+            System.out.println("java -cp IR_P01.jar ir.prog1.CorpusGenerator [output folder] [number of pages]");
+            System.out.println("java -cp IR_P01.jar ir.prog1.CorpusGenerator serve [corpus folder]");
+            throw new IllegalArgumentException("Incorrect number of arguments provided (2 expected, " + args.length
+                    + " provided): " + Arrays.toString(args));
+        }
+
+        if (args[0].equals("serve")) {
+            Path folder = Paths.get(Preconditions.checkNotNull(args[1], "Corpus folder should not be null"));
+            serve(folder, LuceneConstants.CORPUS_PORT);
+            System.out.println("Serving '" + folder + "' on http://localhost:" + LuceneConstants.CORPUS_PORT + "/index.html");
+            return;
+        }
+
+        Path folder = Paths.get(Preconditions.checkNotNull(args[0], "Output folder should not be null"));
+        int pages = Integer.parseInt(args[1]);
+
+        long start = System.currentTimeMillis();
+        new CorpusGenerator(pages).write(folder);
+        System.out.println("Generated " + pages + " pages in '" + folder + "' in "
+                + (System.currentTimeMillis() - start) + " total milliseconds.");
+    }
+
+    /**
+     * Zipf distribution over ranks 0..n-1, rank r has a weight of 1/(r+1)^s.
+     */
+    private static final class ZipfDistribution {
+
+        private final double[] cumulative;
+
+        ZipfDistribution(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0.0;
+            for (int rank = 0; rank < n; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+        }
+    }
+}
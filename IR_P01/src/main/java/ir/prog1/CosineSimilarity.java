@@ -0,0 +1,78 @@
+package ir.prog1;
+
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Lucene Similarity scoring like the VSM model, so VSM queries can be run by an IndexSearcher.
+ *
+ * A term of a document scores tf * idf * idf / documentNorm, with IDF and the TF-IDF document
+ * norms from the statistics of the reader. The query side, the query term frequency divided
+ * by the query norm, is the boost of the term query (see VSM.createQuery), so the sum over
+ * the query terms is the cosine of the VSM model, rounded to float.
+ */
+public class CosineSimilarity extends Similarity {
+
+    // norms are written like with the default similarity of the index writer
+    private static final Similarity NORMS = new BM25Similarity();
+
+    private final IndexStatistics statistics;
+
+    /**
+     * Initializes a new CosineSimilarity instance.
+     * @param statistics statistics of the reader to search
+     */
+    public CosineSimilarity(IndexStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public long computeNorm(FieldInvertState state) {
+        return NORMS.computeNorm(state);
+    }
+
+    @Override
+    public SimWeight computeWeight(float boost, CollectionStatistics collectionStats, TermStatistics... termStats) {
+        OkapiSimilarity.checkField(collectionStats);
+
+        // IDF of the terms, summed for phrases
+        double idf = 0.0;
+        for (TermStatistics termStatistics : termStats) {
+            int ordinal = statistics.getTermOrdinal(termStatistics.term());
+            if (ordinal >= 0) {
+                idf += statistics.getInverseDocumentFrequency(ordinal);
+            }
+        }
+        return new OkapiSimilarity.TermWeight(boost, idf);
+    }
+
+    @Override
+    public SimScorer simScorer(SimWeight weight, LeafReaderContext context) {
+
+        final OkapiSimilarity.TermWeight termWeight = (OkapiSimilarity.TermWeight) weight;
+        final int docBase = context.docBase;
+
+        return new SimScorer() {
+            @Override
+            public float score(int doc, float freq) {
+                double documentNorm = statistics.getDocumentNorm(docBase + doc);
+                return (float) ((double) freq * termWeight.idf * termWeight.idf * termWeight.boost / documentNorm);
+            }
+
+            @Override
+            public float computeSlopFactor(int distance) {
+                return 1.0f / (distance + 1);
+            }
+
+            @Override
+            public float computePayloadFactor(int doc, int start, int end, BytesRef payload) {
+                return 1.0f;
+            }
+        };
+    }
+}
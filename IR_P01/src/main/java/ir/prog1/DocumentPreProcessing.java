@@ -1,5 +1,6 @@
 package ir.prog1;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.StopFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
@@ -18,6 +19,8 @@ import java.util.List;
  */
 public class DocumentPreProcessing {
 
+    private static final Analyzer ANALYZER = new PreProcessingAnalyzer();
+
     /**
      * Given a text it removes the stopwords given as StopAnalyzer.ENGLISH_STOP_WORDS_SET
      * Also, applies PorterStemmer to each word.
@@ -84,6 +87,14 @@ public class DocumentPreProcessing {
         return (firstLen == counter);
     }
 
+    /**
+     * Shared analyzer doing the Data Pre-processing, its token streams are reused per thread.
+     * @return analyzer
+     */
+    public static Analyzer getAnalyzer() {
+        return ANALYZER;
+    }
+
     /**
      * Handles the Data Pre-processing such as
      * 1. converting the paragraph into sentences
@@ -95,20 +106,17 @@ public class DocumentPreProcessing {
      */
     public static String dataPreProcessing(String text) throws IOException {
 
-        // Divide the Contents into several pieces
-        List<String> sentences = Arrays.asList(text.split("[.!?,;:\\t\\\\\\\\\"\\\\(\\\\)\\\\\\'\\u2019\\u2013]|\\\\s\\\\-\\\\s"));
-        StringBuilder builder = new StringBuilder();
-        for (String sentence : sentences) {
-            List<String> words = Arrays.asList(sentence.split("[^a-zA-Z0-9_\\\\+\\\\-\\\\]"));
-            builder.append(DocumentPreProcessing.filterNonWords(words) + " ");
+        StringBuilder builder = new StringBuilder(text.length());
+        try (TokenStream tokenStream = ANALYZER.tokenStream(LuceneConstants.FIELD_CONTENTS, text)) {
+            final CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                builder.append(charTermAttribute.buffer(), 0, charTermAttribute.length()).append(' ');
+            }
+            tokenStream.end();
         }
-        String body = builder.toString();
-        // System.out.println("After Pre-processing: " + body);
 
-        String processedBody = DocumentPreProcessing.removeStopWordsAndStemming(body);
-        // System.out.println("Removed stop words and stemmed: " + processedBody);
-
-        return processedBody;
+        return builder.toString();
     }
 
     /**
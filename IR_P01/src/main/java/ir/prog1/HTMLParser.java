@@ -5,16 +5,23 @@ import org.apache.commons.text.StringEscapeUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
 import org.jsoup.safety.Whitelist;
 import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 /**
  * Parsing and Retrieving fields and value from HTML.
  */
 public class HTMLParser {
 
+    private static final Pattern URL_PATTERN = Pattern.compile(
+            "\\b(https?|ftp|file|telnet|http|Unsure)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]");
 
     /**
      * Initializes a new HTMLParser instance.
@@ -32,9 +39,19 @@ public class HTMLParser {
      * @return title string
      */
     public static String getTitle(String html) {
-        String title = "";
+        return getTitle(Jsoup.parse(html));
+    }
 
-        Document document = Jsoup.parse(html);
+    /**
+     * Get the title from the parsed html document
+     * 1. Search in "title" tag.
+     * 2. If (1) could not be read then check for meta property tag for title
+     *
+     * @param document parsed HTML document
+     * @return title string
+     */
+    private static String getTitle(Document document) {
+        String title = "";
 
         title = new String(document.title());
         if (title != null && title.length() > 0) {
@@ -56,6 +73,51 @@ public class HTMLParser {
         return title;
     }
 
+    /**
+     * Parses the html once and extracts both the title and the cleaned contents.
+     *
+     * @param html HTML String passed
+     * @return title and cleaned contents
+     */
+    public static ParsedPage parse(String html) {
+        return parse(Jsoup.parse(html));
+    }
+
+    /**
+     * Extracts the title (with og:title fallback) and the cleaned contents of a parsed
+     * document in one traversal of the DOM. The contents are the same as getCleanedContents:
+     * 1. text of the document with br translated to newline(\n) and p prefixed by two.
+     * 2. URLs removed, extended chars replaced and runs of whitespace collapsed.
+     *
+     * @param document parsed HTML document
+     * @return title and cleaned contents
+     */
+    public static ParsedPage parse(Document document) {
+
+        final StringBuilder text = new StringBuilder();
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                // script and style contents are data nodes, not text
+                if (node instanceof TextNode) {
+                    text.append(((TextNode) node).getWholeText());
+                } else if (node instanceof Element && "p".equals(((Element) node).tagName())) {
+                    text.append("\n\n");
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element && "br".equals(((Element) node).tagName())) {
+                    text.append('\n');
+                }
+            }
+        }, document);
+
+        String contents = URL_PATTERN.matcher(text).replaceAll("");
+        return new ParsedPage(getTitle(document), normalizeText(contents));
+    }
+
     /**
      * Clean HTML tags while preserving the line breaks using JSoup
      * 1. if the original html contains newline(\n), it gets preserved
@@ -119,9 +181,61 @@ public class HTMLParser {
      * @return normalized string
      */
     public static String removeUrl(String str) {
-        String regex = "\\b(https?|ftp|file|telnet|http|Unsure)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]";
-        str = str.replaceAll(regex, "");
-        return str;
+        return URL_PATTERN.matcher(str).replaceAll("");
+    }
+
+    /**
+     * Replaces extended chars by a space, trims and collapses runs of whitespace into one
+     * space in a single pass. Same as removeExtendedChars, trim() and replaceAll("\\s{2,}", " ").
+     *
+     * @param str String
+     * @return normalized string
+     */
+    private static String normalizeText(String str) {
+
+        int length = str.length();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            chars[i] = c > 0x7F ? ' ' : c;
+        }
+
+        int start = 0;
+        int end = length;
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        StringBuilder builder = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            if (!isWhitespace(chars[i])) {
+                builder.append(chars[i++]);
+                continue;
+            }
+
+            int run = i;
+            while (run < end && isWhitespace(chars[run])) {
+                run++;
+            }
+            // a single whitespace char is kept as it is
+            builder.append(run - i > 1 ? ' ' : chars[i]);
+            i = run;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Checks if the char matches the regex \\s
+     * @param c char
+     * @return true for space, tab, newline, vertical tab, form feed and carriage return
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
 
@@ -4,24 +4,31 @@ import org.apache.lucene.analysis.*;
 import org.apache.lucene.analysis.core.StopAnalyzer;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.en.PorterStemFilter;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.*;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 
 import java.io.*;
+import java.math.BigInteger;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Indexes the documents
  */
 public class IndexFiles {
 
+    // Marks the end of the walked files for the workers
+    private static final File END_OF_FILES = new File("");
+
     /**
      * Initializes a new IndexFiles instance.
      */
@@ -74,61 +81,386 @@ public class IndexFiles {
      * @throws IOException If there is a low-level I/O error
      */
     public static void indexDocuments(String docsPath, String indexPath) throws IOException {
+        indexDocuments(docsPath, indexPath, LuceneConstants.INDEXING_THREADS);
+    }
 
-        ArrayList<File> fileList = new ArrayList<>();
-        getRecursiveFilesInCurrentDir(docsPath, fileList);
+    /**
+     * Indexes all the files in the director with a pipeline:
+     * 1. the calling thread walks the folder and puts the files into a bounded queue.
+     * 2. the worker threads read, parse and pre-process the files and add them to the
+     *    shared IndexWriter, which supports concurrent addDocument calls.
+     *
+     * Documents are streamed to the writer as soon as they are built, the writer flushes
+     * when its RAM buffer is full and commits every COMMIT_INTERVAL documents, so the
+     * heap used stays bounded regardless of the corpus size.
+     *
+     * @param docsPath Document folder which needs to be read.
+     * @param indexPath The index path where indexes will be kept.
+     * @param threads Number of parse/analyze worker threads.
+     * @throws IOException If there is a low-level I/O error
+     */
+    public static void indexDocuments(String docsPath, String indexPath, int threads) throws IOException {
 
-        int counter = 0;
-        List<Document> documentList = new ArrayList<>();
-        for (File file: fileList) {
+        // Create IndexWriter
+        IndexWriter writer = createWriter(indexPath, IndexWriterConfig.OpenMode.CREATE);
+
+        // first clean the directory
+        writer.deleteAll();
 
-            String content = readFileContent(file.toString());
-            String htmlTitle = HTMLParser.getTitle(content);
-            String htmlBody = HTMLParser.getCleanedContents(content);
+        runPipeline(docsPath, writer, threads, new HashMap<String, FileRecord>(), 0);
 
-            String id    = String.valueOf(counter);
-            String title = DocumentPreProcessing.dataPreProcessing(htmlTitle);
-            String body  = DocumentPreProcessing.dataPreProcessing(htmlBody);
-            String path  = file.toString();
+        writer.setLiveCommitData(getCommitData().entrySet());
+        writer.commit();
+        writer.close();
 
-            // Make it document
-            Document document = createDocument(id, title, htmlTitle, body, path);
-            // Add the document to the document Lists
-            documentList.add(document);
-            counter += 1;
+        // Precompute the statistics used by the rankers for the committed index
+        IndexStatistics.write(indexPath);
+    }
 
-            System.out.println("Adding File: " + path);
+    /**
+     * Updates the index with the changes in the director.
+     *
+     * @param docsPath Document folder which needs to be read.
+     * @param indexPath The index path where indexes are kept.
+     * @throws IOException If there is a low-level I/O error
+     */
+    public static void updateDocuments(String docsPath, String indexPath) throws IOException {
+        updateDocuments(docsPath, indexPath, LuceneConstants.INDEXING_THREADS);
+    }
+
+    /**
+     * Updates the index with the changes in the director, instead of rebuilding it.
+     * 1. files with the same size and modification time as when indexed are skipped.
+     * 2. files whose content hash didn't change are skipped.
+     * 3. added or changed files are (re)indexed with updateDocument on their path.
+     * 4. indexed files that no longer exist are deleted.
+     *
+     * @param docsPath Document folder which needs to be read.
+     * @param indexPath The index path where indexes are kept.
+     * @param threads Number of parse/analyze worker threads.
+     * @throws IOException If there is a low-level I/O error
+     */
+    public static void updateDocuments(String docsPath, String indexPath, int threads) throws IOException {
+
+        // An index analyzed differently can't be updated, the terms wouldn't match
+        if (!isSameAnalysis(indexPath)) {
+            System.out.println("Index was built with another analysis chain, re-creating it.");
+            indexDocuments(docsPath, indexPath, threads);
+            return;
         }
 
-        // Create IndexWriter
-        IndexWriter writer = createWriter(indexPath);
+        // What is in the index right now
+        HashMap<String, FileRecord> records = new HashMap<>();
+        int nextId = readFileRecords(indexPath, records);
 
-        // first clean the directory
-        writer.deleteAll();
-        writer.addDocuments(documentList);
+        IndexWriter writer = createWriter(indexPath, IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        IndexingReport report = runPipeline(docsPath, writer, threads, records, nextId);
 
+        // Files that are gone from the document folder
+        int deleted = 0;
+        for (String path : records.keySet()) {
+            if (!report.walkedPaths.contains(path)) {
+                writer.deleteDocuments(new Term(LuceneConstants.FIELD_PATH, path));
+                deleted++;
+            }
+        }
+
+        writer.setLiveCommitData(getCommitData().entrySet());
         writer.commit();
         writer.close();
+
+        // Precompute the statistics used by the rankers for the committed index
+        IndexStatistics.write(indexPath);
+
+        System.out.println("Added: " + report.added.get() + ", Updated: " + report.updated.get()
+                + ", Deleted: " + deleted + ", Skipped (unchanged): " + report.skipped.get());
+    }
+
+    /**
+     * Walks the folder and indexes the files with a pool of worker threads.
+     * Files that have a record are updated on their path, or skipped if they didn't change.
+     *
+     * @param docsPath Document folder which needs to be read.
+     * @param writer index writer
+     * @param threads Number of parse/analyze worker threads.
+     * @param records Indexed files by their path
+     * @param firstId id of the first added document
+     * @return counts of the added, updated and skipped documents
+     * @throws IOException If there is a low-level I/O error
+     */
+    private static IndexingReport runPipeline(String docsPath, final IndexWriter writer, int threads,
+                                              final Map<String, FileRecord> records, int firstId) throws IOException {
+
+        final BlockingQueue<File> queue = new ArrayBlockingQueue<>(LuceneConstants.INDEXING_QUEUE_SIZE);
+        final AtomicInteger counter = new AtomicInteger(firstId);
+        final AtomicInteger indexed = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final IndexingReport report = new IndexingReport();
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        File file;
+                        while ((file = queue.take()) != END_OF_FILES) {
+                            // keep draining after a failure, so the walker never blocks
+                            if (failure.get() != null) {
+                                continue;
+                            }
+
+                            try {
+                                FileRecord record = records.get(file.toString());
+                                if (!indexFile(file, counter, record, writer)) {
+                                    report.skipped.incrementAndGet();
+                                    continue;
+                                }
+                                (record == null ? report.added : report.updated).incrementAndGet();
+
+                                // commit now and then, so a crash doesn't lose everything
+                                int added = indexed.incrementAndGet();
+                                if (LuceneConstants.COMMIT_INTERVAL > 0 && added % LuceneConstants.COMMIT_INTERVAL == 0) {
+                                    writer.commit();
+                                }
+                            } catch (Throwable t) {
+                                // Errors too, the worker has to go on draining and the writer be rolled back
+                                failure.compareAndSet(null, t);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        try {
+            walkFiles(docsPath, queue, records, report);
+            for (int i = 0; i < threads; i++) {
+                queue.put(END_OF_FILES);
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            writer.rollback();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Indexing was interrupted.");
+        }
+
+        if (failure.get() != null) {
+            writer.rollback();
+            Throwable t = failure.get();
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw t instanceof IOException ? (IOException) t : new IOException(t);
+        }
+
+        return report;
+    }
+
+    /**
+     * Recurse over directories and put the files under the given directory into the queue.
+     * Files with the same size and modification time as their record are skipped right away.
+     *
+     * @param folderPath Document folder which needs to be read.
+     * @param queue Queue of the html files those needs to be indexed
+     * @param records Indexed files by their path
+     * @param report collects the walked paths and the skipped files
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    private static void walkFiles(String folderPath, BlockingQueue<File> queue,
+                                  Map<String, FileRecord> records, IndexingReport report) throws InterruptedException {
+
+        File root = new File(folderPath);
+        File[] files = root.listFiles();
+
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                walkFiles(file.toString(), queue, records, report);
+            } else {
+                // Filter the files based on "html"
+                if(file.getAbsolutePath().endsWith(LuceneConstants.FILE_EXTENSION)) {
+                    report.walkedPaths.add(file.toString());
+
+                    FileRecord record = records.get(file.toString());
+                    if (record != null && record.size == file.length() && record.modified == file.lastModified()) {
+                        report.skipped.incrementAndGet();
+                        continue;
+                    }
+                    queue.put(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads, parses and pre-processes a file and adds it to the index.
+     * If the file has a record, the indexed document is replaced unless the content is the same.
+     * A file with the same content but a new size or modification time is indexed again too,
+     * so its record is refreshed and the next run skips it on its stat alone.
+     *
+     * @param file html file
+     * @param counter document id sequence
+     * @param record record of the indexed file, or null if it is new
+     * @param writer index writer
+     * @return false if the file was skipped because its content didn't change
+     * @throws IOException If there is a low-level I/O error
+     */
+    private static boolean indexFile(File file, AtomicInteger counter, FileRecord record, IndexWriter writer) throws IOException {
+
+        // stat before reading, so a change while reading is picked up next time
+        long size = file.length();
+        long modified = file.lastModified();
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String hash = getContentHash(bytes);
+        boolean sameContent = record != null && hash.equals(record.hash);
+        if (sameContent && record.size == size && record.modified == modified) {
+            return false;
+        }
+
+        // parse once for the title and the contents
+        ParsedPage page = HTMLParser.parse(new String(bytes));
+        String htmlTitle = page.getTitle();
+        String htmlBody = page.getContents();
+
+        String id    = String.valueOf(counter.getAndIncrement());
+        String path  = file.toString();
+
+        // Make it document, the writer's analyzer does the pre-processing
+        Document document = createDocument(id, htmlTitle, htmlBody, path, size, modified, hash);
+        if (record == null) {
+            writer.addDocument(document);
+            System.out.println("Adding File: " + path);
+        } else {
+            writer.updateDocument(new Term(LuceneConstants.FIELD_PATH, path), document);
+            System.out.println((sameContent ? "Refreshing File: " : "Updating File: ") + path);
+        }
+
+        return !sameContent;
+    }
+
+    /**
+     * Reads the path, size, modification time and content hash of every indexed file.
+     *
+     * @param indexPath The index path where indexes are kept.
+     * @param records Indexed files by their path
+     * @return the next free document id
+     * @throws IOException If there is a low-level I/O error
+     */
+    private static int readFileRecords(String indexPath, Map<String, FileRecord> records) throws IOException {
+
+        Directory directory = FSDirectory.open(Paths.get(indexPath));
+        if (!DirectoryReader.indexExists(directory)) {
+            return 0;
+        }
+
+        Set<String> fields = new HashSet<>(Arrays.asList(LuceneConstants.FIELD_ID, LuceneConstants.FIELD_PATH,
+                LuceneConstants.FIELD_SIZE, LuceneConstants.FIELD_MODIFIED, LuceneConstants.FIELD_HASH));
+
+        int nextId = 0;
+        try (IndexReader indexReader = DirectoryReader.open(directory)) {
+            Bits liveDocs = MultiFields.getLiveDocs(indexReader);
+            for (int docId = 0; docId < indexReader.maxDoc(); docId++) {
+                if (liveDocs != null && !liveDocs.get(docId)) {
+                    continue;
+                }
+
+                Document document = indexReader.document(docId, fields);
+                nextId = Math.max(nextId, Integer.parseInt(document.get(LuceneConstants.FIELD_ID)) + 1);
+
+                // documents indexed without the file fields are always re-indexed
+                IndexableField size = document.getField(LuceneConstants.FIELD_SIZE);
+                IndexableField modified = document.getField(LuceneConstants.FIELD_MODIFIED);
+                String hash = document.get(LuceneConstants.FIELD_HASH);
+
+                FileRecord record = new FileRecord(
+                        size == null ? -1 : size.numericValue().longValue(),
+                        modified == null ? -1 : modified.numericValue().longValue(),
+                        hash == null ? "" : hash);
+                records.put(document.get(LuceneConstants.FIELD_PATH), record);
+            }
+        }
+
+        return nextId;
+    }
+
+    /**
+     * Commit data recording how the index was analyzed.
+     *
+     * @return commit user data
+     */
+    private static Map<String, String> getCommitData() {
+        return Collections.singletonMap(LuceneConstants.COMMIT_ANALYSIS, LuceneConstants.ANALYSIS_VERSION);
+    }
+
+    /**
+     * Checks if the existing index was analyzed with the current analysis chain.
+     *
+     * @param indexPath The index path where indexes are kept.
+     * @return true if the index can be updated, or there is no index yet
+     * @throws IOException If there is a low-level I/O error
+     */
+    private static boolean isSameAnalysis(String indexPath) throws IOException {
+
+        Directory directory = FSDirectory.open(Paths.get(indexPath));
+        if (!DirectoryReader.indexExists(directory)) {
+            return true;
+        }
+
+        try (DirectoryReader indexReader = DirectoryReader.open(directory)) {
+            Map<String, String> userData = indexReader.getIndexCommit().getUserData();
+            return LuceneConstants.ANALYSIS_VERSION.equals(userData.get(LuceneConstants.COMMIT_ANALYSIS));
+        }
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param bytes content of the file
+     * @return hex encoded SHA-1 of the content
+     */
+    private static String getContentHash(byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return new BigInteger(1, digest.digest(bytes)).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
      * Create the Document for indexing.
      *
-     * @param title Title of the document
+     * @param id Id of the document
+     * @param htmlTitle HTML Title of the document
      * @param body Body of the document
      * @param path Path of the document
+     * @param size Size of the file in bytes
+     * @param modified Modification time of the file
+     * @param hash Content hash of the file
      */
-    private static Document createDocument(String id, String title, String htmlTitle, String body, String path) {
+    private static Document createDocument(String id, String htmlTitle, String body, String path,
+                                           long size, long modified, String hash) {
 
         FieldType fieldType = new FieldType(TextField.TYPE_STORED);
         fieldType.setStoreTermVectors(true);
 
         Document document = new Document();
         document.add(new StringField(LuceneConstants.FIELD_ID, id, Field.Store.YES));
-        document.add(new StringField(LuceneConstants.FIELD_TITLE, title, Field.Store.YES));
+        document.add(new TextField(LuceneConstants.FIELD_TITLE, htmlTitle, Field.Store.YES));
         document.add(new StringField(LuceneConstants.FIELD_HTML_TITLE, htmlTitle, Field.Store.YES));
         document.add(new Field(LuceneConstants.FIELD_CONTENTS, body, fieldType));
         document.add(new StringField(LuceneConstants.FIELD_PATH, path, Field.Store.YES));
+        document.add(new StoredField(LuceneConstants.FIELD_SIZE, size));
+        document.add(new StoredField(LuceneConstants.FIELD_MODIFIED, modified));
+        document.add(new StringField(LuceneConstants.FIELD_HASH, hash, Field.Store.YES));
 
         return document;
     }
@@ -137,28 +469,49 @@ public class IndexFiles {
      * Create the Indexwriter for indexing.
      *
      * @param indexPath Index path where the given file/dir info will be stored
+     * @param openMode CREATE to remove any previously indexed documents, CREATE_OR_APPEND to add to them
      * @throws IOException If there is a low-level I/O error
      */
-    private static IndexWriter createWriter(String indexPath) throws IOException {
+    private static IndexWriter createWriter(String indexPath, IndexWriterConfig.OpenMode openMode) throws IOException {
 
         // Get the path for the indexing
         FSDirectory dir = FSDirectory.open(Paths.get(indexPath));
-        Analyzer analyzer = new StandardAnalyzer();
+        // same analysis chain as the queries
+        Analyzer analyzer = DocumentPreProcessing.getAnalyzer();
         IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
 
-        // Create a new index in the directory,
-        // removing any previously indexed documents.
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        iwc.setOpenMode(openMode);
 
-        // if needed to add new documents to an existing index,
-        // then do as follows
-        // iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-
-        // control the RAM buffer, if indexing many documents
-        // iwc.setRAMBufferSizeMB(256.0);
+        // control the RAM buffer, documents are flushed to a new segment once it is full
+        iwc.setRAMBufferSizeMB(LuceneConstants.RAM_BUFFER_SIZE_MB);
 
         IndexWriter writer = new IndexWriter(dir, iwc);
 
         return writer;
     }
+
+    /**
+     * Path, size, modification time and content hash of an indexed file.
+     */
+    private static final class FileRecord {
+        final long size;
+        final long modified;
+        final String hash;
+
+        FileRecord(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Counts of an indexing run.
+     */
+    private static final class IndexingReport {
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final Set<String> walkedPaths = new HashSet<>();
+    }
 }
@@ -0,0 +1,281 @@
+package ir.prog1;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the query throughput and latency of the ranking models.
+ *
+ * One reader and one model are shared by all the clients, every client runs queries
+ * back to back on its own thread for a fixed time. Latency covers scoring and collecting
+ * the top documents, it doesn't include loading their stored fields.
+ *
+ * Call: java -cp IR_P01.jar ir.prog1.LoadGenerator [path to index folder] [VS/OK] [queries file]
+ * The queries file is optional, one query per line. Without it queries of 1 to 3 terms are
+ * sampled from the index.
+ */
+public class LoadGenerator {
+
+    private final DirectoryReader indexReader;
+    private final VSM vsm;
+    private final BM25 bm25;
+    private final List<HashMap<String, Integer>> queries;
+
+    /**
+     * Initializes a new LoadGenerator instance.
+     * @param indexReader reader shared by the clients
+     * @param vsm VSM model, null when ranking with BM25
+     * @param bm25 BM25 model, null when ranking with VSM
+     * @param queries analyzed queries
+     */
+    public LoadGenerator(DirectoryReader indexReader, VSM vsm, BM25 bm25, List<HashMap<String, Integer>> queries) {
+        Preconditions.checkArgument(vsm != null || bm25 != null, "A model should be given.");
+        Preconditions.checkArgument(!queries.isEmpty(), "Queries should not be empty.");
+
+        this.indexReader = indexReader;
+        this.vsm = vsm;
+        this.bm25 = bm25;
+        this.queries = queries;
+    }
+
+    /**
+     * Runs the queries with the given number of concurrent clients and prints QPS and latencies.
+     * @param clients number of concurrent clients
+     * @param warmupSeconds seconds to run before measuring
+     * @param seconds seconds to measure
+     * @throws IOException if a query failed
+     */
+    public void run(int clients, int warmupSeconds, int seconds) throws IOException {
+
+        final long start = System.nanoTime();
+        final long measureStart = start + warmupSeconds * 1000000000L;
+        final long measureEnd = measureStart + seconds * 1000000000L;
+
+        final Client[] running = new Client[clients];
+        final CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            running[i] = new Client(i, measureStart, measureEnd, done);
+            new Thread(running[i], "load-client-" + i).start();
+        }
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the clients.", e);
+        }
+
+        // merge the latencies of every client
+        int total = 0;
+        for (Client client : running) {
+            if (client.failure != null) {
+                throw new IOException("Query failed", client.failure);
+            }
+            total += client.count;
+        }
+        long[] latencies = new long[total];
+        int position = 0;
+        for (Client client : running) {
+            System.arraycopy(client.latencies, 0, latencies, position, client.count);
+            position += client.count;
+        }
+        Arrays.sort(latencies);
+
+        System.out.println(String.format("clients: %3d, queries: %8d, QPS: %10.1f, p50: %8.3f ms, p99: %8.3f ms, max: %8.3f ms",
+                clients, total, total / (double) seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0)));
+    }
+
+    /**
+     * Scores one query and keeps the best documents.
+     * @param query analyzed query
+     * @return collector holding the best documents
+     * @throws IOException if the index couldnot be read
+     */
+    private TopKCollector search(HashMap<String, Integer> query) throws IOException {
+
+        TopKCollector collector = new TopKCollector(LuceneConstants.RESULTS_COUNT);
+        if (vsm != null) {
+            vsm.collectTopDocuments(indexReader, query, collector);
+        } else {
+            bm25.collectTopDocuments(indexReader, query, collector);
+        }
+        collector.sort();
+        return collector;
+    }
+
+    /**
+     * @param sortedLatencies latencies in nanoseconds, sorted
+     * @param fraction fraction of the latencies that are lower or equal
+     * @return latency in milliseconds
+     */
+    private static double percentile(long[] sortedLatencies, double fraction) {
+        if (sortedLatencies.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(fraction * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1000000.0;
+    }
+
+    /**
+     * Samples queries of 1 to 3 terms from the terms of the index.
+     * @param indexReader reader of the index
+     * @param numberOfQueries number of queries to make
+     * @return analyzed queries
+     * @throws IOException if the index couldnot be read
+     */
+    public static List<HashMap<String, Integer>> sampleQueries(DirectoryReader indexReader, int numberOfQueries) throws IOException {
+
+        Random random = new Random(42);
+
+        // reservoir of terms
+        List<String> terms = new ArrayList<>();
+        Terms fieldTerms = MultiFields.getTerms(indexReader, LuceneConstants.FIELD_CONTENTS);
+        if (fieldTerms != null) {
+            TermsEnum iterator = fieldTerms.iterator();
+            BytesRef term;
+            long seen = 0;
+            while ((term = iterator.next()) != null) {
+                seen++;
+                if (terms.size() < numberOfQueries) {
+                    terms.add(term.utf8ToString());
+                } else {
+                    long slot = (long) (random.nextDouble() * seen);
+                    if (slot < numberOfQueries) {
+                        terms.set((int) slot, term.utf8ToString());
+                    }
+                }
+            }
+        }
+
+        List<HashMap<String, Integer>> queries = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return queries;
+        }
+        for (int i = 0; i < numberOfQueries; i++) {
+            // the terms are already analyzed, don't stem them twice
+            HashMap<String, Integer> query = new HashMap<>();
+            int length = 1 + random.nextInt(3);
+            for (int j = 0; j < length; j++) {
+                query.put(terms.get(random.nextInt(terms.size())), 1);
+            }
+            queries.add(query);
+        }
+        return queries;
+    }
+
+    /**
+     * Driver Class
+     * Call: java -cp IR_P01.jar ir.prog1.LoadGenerator [path to index folder] [VS/OK] [queries file]
+     * @param args arguments
+     * @throws IOException if the index or the queries couldnot be read
+     */
+    public static void main(String... args) throws IOException {
+
+        if (args.length != 2 && args.length != 3) {
+            System.out.println("java -cp IR_P01.jar ir.prog1.LoadGenerator [path to index folder] [VS/OK] [queries file]");
+            throw new IllegalArgumentException("Incorrect number of arguments provided (2 or 3 expected, " + args.length
+                    + " provided): " + Arrays.toString(args));
+        }
+
+        String indexPath = Preconditions.checkNotNull(args[0], "Index path should not be null");
+        String model     = Preconditions.checkNotNull(args[1], "Model should not be null");
+        if (!model.equalsIgnoreCase("VS") && !model.equalsIgnoreCase("OK")) {
+            throw new IllegalArgumentException("Model should be VS or OK: " + model);
+        }
+
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+
+            List<HashMap<String, Integer>> queries = new ArrayList<>();
+            if (args.length == 3) {
+                for (String line : Files.readAllLines(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                    HashMap<String, Integer> query = Utils.analyzeQuery(line);
+                    if (!query.isEmpty()) {
+                        queries.add(query);
+                    }
+                }
+            } else {
+                queries = sampleQueries(indexReader, LuceneConstants.LOAD_QUERIES);
+            }
+
+            // one immutable model shared by every client
+            VSM vsm = null;
+            BM25 bm25 = null;
+            if (model.equalsIgnoreCase("VS")) {
+                vsm = VSM.loadStatistics(indexReader, indexPath);
+            } else {
+                bm25 = BM25.loadStatistics(indexReader, indexPath);
+            }
+
+            LoadGenerator loadGenerator = new LoadGenerator(indexReader, vsm, bm25, queries);
+            System.out.println("Running " + queries.size() + " queries on " + indexReader.numDocs() + " documents with "
+                    + model.toUpperCase() + ".");
+            for (String clients : LuceneConstants.LOAD_CLIENTS.split(",")) {
+                loadGenerator.run(Integer.parseInt(clients.trim()), LuceneConstants.LOAD_WARMUP_SECONDS,
+                        LuceneConstants.LOAD_SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Runs queries back to back and records the latencies after the warmup.
+     */
+    private final class Client implements Runnable {
+
+        private final int id;
+        private final long measureStart;
+        private final long measureEnd;
+        private final CountDownLatch done;
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private Exception failure;
+
+        Client(int id, long measureStart, long measureEnd, CountDownLatch done) {
+            this.id = id;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // every client starts at another query
+                int next = id * 7919;
+                while (true) {
+                    HashMap<String, Integer> query = queries.get((next++ & Integer.MAX_VALUE) % queries.size());
+
+                    long begin = System.nanoTime();
+                    if (begin >= measureEnd) {
+                        break;
+                    }
+                    search(query);
+                    long end = System.nanoTime();
+
+                    if (begin >= measureStart && end <= measureEnd) {
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = end - begin;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
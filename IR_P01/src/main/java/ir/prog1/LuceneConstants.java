@@ -11,5 +11,74 @@ public class LuceneConstants {
     public static String FIELD_ID = "id";
     public static String FIELD_TITLE = "title";
     public static String FIELD_HTML_TITLE = "htmlTitle";
+    public static String FIELD_SIZE = "size";
+    public static String FIELD_MODIFIED = "modified";
+    public static String FIELD_HASH = "hash";
     public static String FILE_EXTENSION = ".html";
+    public static String STATISTICS_FILE = "statistics.bin";
+    public static String FORWARD_INDEX_FILE = "forward.bin";
+
+    // Recorded in the commit data, change it whenever PreProcessingAnalyzer changes the terms it emits
+    public static String COMMIT_ANALYSIS = "analysis";
+    public static String ANALYSIS_VERSION = "preprocessing-1";
+
+    // Indexing pipeline, override with -Dindexing.threads=N
+    public static int INDEXING_THREADS = Integer.getInteger("indexing.threads", Runtime.getRuntime().availableProcessors());
+    public static int INDEXING_QUEUE_SIZE = 1024;
+
+    // Memory used for buffering documents before they are flushed, override with -Dindexing.ram.buffer.mb=N
+    public static double RAM_BUFFER_SIZE_MB = Double.parseDouble(System.getProperty("indexing.ram.buffer.mb", "64"));
+    // Commit after this many added documents, override with -Dindexing.commit.interval=N (0 disables)
+    public static int COMMIT_INTERVAL = Integer.getInteger("indexing.commit.interval", 10000);
+
+    // BM25 parameters, override with -Dbm25.k1=N, -Dbm25.b=N and -Dbm25.idf=ttf|rsj|lucene,
+    // the indexer computes the BM25 upper bounds with them, BM25 doesn't prune with other ones
+    public static double BM25_K1 = Double.parseDouble(System.getProperty("bm25.k1", "1.2"));
+    public static double BM25_B = Double.parseDouble(System.getProperty("bm25.b", "0.75"));
+    public static String BM25_IDF = System.getProperty("bm25.idf", "ttf");
+    // BM25F, a title weight above 0 (-Dbm25.title.weight=N) scores the title field too,
+    // override with -Dbm25.contents.weight=N and -Dbm25.title.b=N
+    public static double BM25_CONTENTS_WEIGHT = Double.parseDouble(System.getProperty("bm25.contents.weight", "1.0"));
+    public static double BM25_TITLE_WEIGHT = Double.parseDouble(System.getProperty("bm25.title.weight", "0"));
+    public static double BM25_TITLE_B = Double.parseDouble(System.getProperty("bm25.title.b", "0.75"));
+
+    // docIDs per block of the BM25 block upper bounds
+    public static int BLOCK_SIZE = 1024;
+    // Skip documents that can't make the top documents, disable with -Dranking.pruning=false
+    public static boolean PRUNING = Boolean.parseBoolean(System.getProperty("ranking.pruning", "true"));
+    // Rank with an IndexSearcher and the OkapiSimilarity/CosineSimilarity of the models, enable with -Dranking.native=true
+    public static boolean NATIVE_SCORING = Boolean.getBoolean("ranking.native");
+
+    // Page of ranked documents to print, override with -Dresults.count=N and -Dresults.offset=N
+    public static int RESULTS_COUNT = Integer.getInteger("results.count", 10);
+    public static int RESULTS_OFFSET = Integer.getInteger("results.offset", 0);
+
+    // Search server, override with -Dserver.port=N, -Dserver.threads=N and -Dserver.refresh.seconds=N
+    public static int SERVER_PORT = Integer.getInteger("server.port", 8080);
+    public static int SERVER_THREADS = Integer.getInteger("server.threads", Runtime.getRuntime().availableProcessors());
+    public static int SERVER_REFRESH_SECONDS = Integer.getInteger("server.refresh.seconds", 5);
+
+    // Largest page a search request may ask for, override with -Dserver.max.count=N and -Dserver.max.offset=N
+    public static int SERVER_MAX_COUNT = Integer.getInteger("server.max.count", 1000);
+    public static int SERVER_MAX_OFFSET = Integer.getInteger("server.max.offset", 10000);
+
+    // Load generator, override with -Dload.clients=1,8,64, -Dload.seconds=N, -Dload.warmup.seconds=N and -Dload.queries=N
+    public static String LOAD_CLIENTS = System.getProperty("load.clients", "1,8,64");
+    public static int LOAD_SECONDS = Integer.getInteger("load.seconds", 10);
+    public static int LOAD_WARMUP_SECONDS = Integer.getInteger("load.warmup.seconds", 3);
+    public static int LOAD_QUERIES = Integer.getInteger("load.queries", 1000);
+
+    // Synthetic corpus, override with -Dcorpus.seed=N, -Dcorpus.vocabulary=N, -Dcorpus.zipf=S, -Dcorpus.words=N,
+    // -Dcorpus.words.sigma=S, -Dcorpus.title.rate=P, -Dcorpus.ogtitle.rate=P, -Dcorpus.links=N,
+    // -Dcorpus.broken.rate=P and -Dcorpus.port=N
+    public static long CORPUS_SEED = Long.getLong("corpus.seed", 42L);
+    public static int CORPUS_VOCABULARY = Integer.getInteger("corpus.vocabulary", 100000);
+    public static double CORPUS_ZIPF = Double.parseDouble(System.getProperty("corpus.zipf", "1.0"));
+    public static int CORPUS_WORDS = Integer.getInteger("corpus.words", 400);
+    public static double CORPUS_WORDS_SIGMA = Double.parseDouble(System.getProperty("corpus.words.sigma", "0.8"));
+    public static double CORPUS_TITLE_RATE = Double.parseDouble(System.getProperty("corpus.title.rate", "0.9"));
+    public static double CORPUS_OG_TITLE_RATE = Double.parseDouble(System.getProperty("corpus.ogtitle.rate", "0.3"));
+    public static double CORPUS_LINKS = Double.parseDouble(System.getProperty("corpus.links", "10"));
+    public static double CORPUS_BROKEN_LINK_RATE = Double.parseDouble(System.getProperty("corpus.broken.rate", "0.01"));
+    public static int CORPUS_PORT = Integer.getInteger("corpus.port", 8000);
 }
@@ -0,0 +1,102 @@
+package ir.prog1;
+
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Lucene Similarity scoring like the BM25 model, so BM25 queries can be run by an IndexSearcher.
+ *
+ * k1, b and the IDF variant are the ones of the model. IDF, the document lengths and the average
+ * length come from the statistics of the reader, the norms of the index are lossy and aren't used
+ * for scoring. A similarity belongs to the reader of its model.
+ * Scores are the ones of BM25 (not BM25F), rounded to float.
+ */
+public class OkapiSimilarity extends Similarity {
+
+    // norms are written like with the default similarity of the index writer
+    private static final Similarity NORMS = new BM25Similarity();
+
+    private final BM25 model;
+
+    /**
+     * Initializes a new OkapiSimilarity instance.
+     * @param model BM25 model of the reader to search
+     */
+    public OkapiSimilarity(BM25 model) {
+        this.model = model;
+    }
+
+    @Override
+    public long computeNorm(FieldInvertState state) {
+        return NORMS.computeNorm(state);
+    }
+
+    @Override
+    public SimWeight computeWeight(float boost, CollectionStatistics collectionStats, TermStatistics... termStats) {
+        checkField(collectionStats);
+
+        double idf = 0.0;
+        for (TermStatistics termStatistics : termStats) {
+            int ordinal = model.statistics.getTermOrdinal(termStatistics.term());
+            if (ordinal >= 0) {
+                idf += model.getInverseDocumentFrequency(ordinal);
+            }
+        }
+        return new TermWeight(boost, idf);
+    }
+
+    @Override
+    public SimScorer simScorer(SimWeight weight, LeafReaderContext context) {
+
+        final TermWeight termWeight = (TermWeight) weight;
+        final int docBase = context.docBase;
+        final IndexStatistics statistics = model.statistics;
+
+        return new SimScorer() {
+            @Override
+            public float score(int doc, float freq) {
+                double documentLength = statistics.getDocumentLength(docBase + doc);
+                return (float) (termWeight.boost
+                        * BM25.getTermScore(termWeight.idf, (int) freq, documentLength, model.averageLength, model.k1, model.b));
+            }
+
+            @Override
+            public float computeSlopFactor(int distance) {
+                return 1.0f / (distance + 1);
+            }
+
+            @Override
+            public float computePayloadFactor(int doc, int start, int end, BytesRef payload) {
+                return 1.0f;
+            }
+        };
+    }
+
+    /**
+     * Checks that the query is on the field the statistics are kept for
+     * @param collectionStats statistics of the field
+     */
+    static void checkField(CollectionStatistics collectionStats) {
+        Preconditions.checkArgument(LuceneConstants.FIELD_CONTENTS.equals(collectionStats.field()),
+                "Statistics are only kept for the " + LuceneConstants.FIELD_CONTENTS + " field: " + collectionStats.field());
+    }
+
+    /**
+     * Query boost and IDF of a term.
+     */
+    static final class TermWeight extends SimWeight {
+
+        final float boost;
+        final double idf;
+
+        TermWeight(float boost, double idf) {
+            this.boost = boost;
+            this.idf = idf;
+        }
+    }
+}
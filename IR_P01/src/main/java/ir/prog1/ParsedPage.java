@@ -0,0 +1,34 @@
+package ir.prog1;
+
+/**
+ * Title and cleaned contents of an HTML page.
+ */
+public class ParsedPage {
+
+    private final String title;
+    private final String contents;
+
+    /**
+     * Initializes a new ParsedPage instance.
+     * @param title title of the page
+     * @param contents cleaned contents of the page
+     */
+    public ParsedPage(String title, String contents) {
+        this.title = title;
+        this.contents = contents;
+    }
+
+    /**
+     * @return the title, or the og:title if the page has no title tag
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return the text of the page without tags, urls and extended chars
+     */
+    public String getContents() {
+        return contents;
+    }
+}
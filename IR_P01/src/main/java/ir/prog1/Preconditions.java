@@ -44,4 +44,26 @@ public final class Preconditions {
 
         return string;
     }
+
+    /**
+     * Checks if the given expression about an argument is true
+     * @param expression: the expression to check
+     * @param errorMessage: the error message to provide if the expression is false
+     */
+    public static void checkArgument(boolean expression, Object errorMessage) {
+        if (!expression) {
+            throw new IllegalArgumentException(String.valueOf(errorMessage));
+        }
+    }
+
+    /**
+     * Checks if the given expression about the state of the caller is true
+     * @param expression: the expression to check
+     * @param errorMessage: the error message to provide if the expression is false
+     */
+    public static void checkState(boolean expression, Object errorMessage) {
+        if (!expression) {
+            throw new IllegalStateException(String.valueOf(errorMessage));
+        }
+    }
 }
@@ -1,12 +1,20 @@
 package ir.prog1;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Paths;
 import java.util.*;
 
@@ -16,64 +24,126 @@ import java.util.*;
 public class Utils {
 
     /**
-     * Sorts the matched documents and Prints accordingly.
+     * Prints a page of the ranked documents.
      * @param indexPath index path
-     * @param matchedDocuments matched documents
+     * @param collector collector holding the best documents, it should keep at least offset + count documents
+     * @param offset number of best documents to skip
      * @throws IOException if path value couldnot be read
      */
-    public static void printRankedDocuments(String indexPath, HashMap<String, Double> matchedDocuments) throws IOException {
+    public static void printRankedDocuments(String indexPath, TopKCollector collector, int offset) throws IOException {
 
-        System.out.println("Searched query matched with total " + matchedDocuments.size() + " documents.\n");
+        try (IndexReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            printRankedDocuments(indexReader, collector, offset, System.out);
+        }
+    }
 
-        ValueComparator bvc = new ValueComparator(matchedDocuments);
-        TreeMap<String, Double> sorted_map = new TreeMap<String, Double>(bvc);
+    /**
+     * Prints a page of the ranked documents.
+     * @param indexReader reader the documents were ranked with
+     * @param collector collector holding the best documents, it should keep at least offset + count documents
+     * @param offset number of best documents to skip
+     * @param out where to print the documents
+     * @throws IOException if the documents couldnot be read
+     */
+    public static void printRankedDocuments(IndexReader indexReader, TopKCollector collector, int offset,
+                                            PrintStream out) throws IOException {
 
-        sorted_map.putAll(matchedDocuments);
+        out.println("Searched query matched with " + (collector.isTotalHitsExact() ? "total " : "at least ")
+                + collector.getTotalHits() + " documents.\n");
 
-        Directory directory = FSDirectory.open(Paths.get(indexPath));
-        IndexReader indexReader = DirectoryReader.open(directory);
-        int counter = 0;
+        collector.sort();
+        int end = collector.size();
+        if (offset >= end) {
+            return;
+        }
 
-        if(matchedDocuments.size() > 10) {
-            System.out.println("Printing first 10 Relevant documents.");
+        if (collector.getTotalHits() > end - offset) {
+            out.println("Printing " + (end - offset) + " Relevant documents from rank " + (offset + 1) + ".");
         }
-        for (Map.Entry<String, Double> entry : sorted_map.entrySet()) {
-            if (counter >= 10)
-                break;
-
-            int key = Integer.parseInt(entry.getKey());
-            Document document = indexReader.document(key);
-            String documentID = new String(document.get(LuceneConstants.FIELD_ID));
-            String documentHTMLTitle = new String(document.get(LuceneConstants.FIELD_HTML_TITLE));
-            String documentPath = new String(document.get(LuceneConstants.FIELD_PATH));
-
-            System.out.println("Rank: " + (counter+1) + ", Title: " + documentHTMLTitle.trim() + ", Relevance Score: " + entry.getValue() + ", Path: " + documentPath);
-            counter ++;
+
+        for (int rank = offset; rank < end; rank++) {
+            Document document = indexReader.document(collector.getDocId(rank));
+            String documentHTMLTitle = document.get(LuceneConstants.FIELD_HTML_TITLE);
+            String documentPath = document.get(LuceneConstants.FIELD_PATH);
+
+            out.println("Rank: " + (rank + 1) + ", Title: " + documentHTMLTitle.trim() + ", Relevance Score: "
+                    + String.format("%.5f", collector.getScore(rank)) + ", Path: " + documentPath);
         }
     }
 
+    /**
+     * Runs the query with the searcher and keeps the documents with a positive score,
+     * like the ranking models do.
+     * @param searcher searcher, with the similarity of the ranking model
+     * @param query query
+     * @param collector collector of the best documents
+     * @throws IOException if the index couldnot be read
+     */
+    public static void collectTopDocuments(IndexSearcher searcher, Query query, final TopKCollector collector) throws IOException {
+
+        searcher.search(query, new SimpleCollector() {
+            private Scorer scorer;
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) {
+                docBase = context.docBase;
+            }
+
+            @Override
+            public void setScorer(Scorer scorer) {
+                this.scorer = scorer;
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                float score = scorer.score();
+                if (score > 0.0f) {
+                    collector.collect(docBase + doc, score);
+                }
+            }
+
+            @Override
+            public boolean needsScores() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Create TermFrequency Map from the user query, using the same analysis chain as the index
+     * @param userQuery query as typed by the user
+     * @return Term-Frequency Map
+     * @throws IOException if the query couldnot be analyzed
+     */
+    public static HashMap<String, Integer> analyzeQuery(String userQuery) throws IOException {
+        HashMap<String, Integer> termFrequency = new HashMap<>();
+
+        Analyzer analyzer = DocumentPreProcessing.getAnalyzer();
+        try (TokenStream tokenStream = analyzer.tokenStream(LuceneConstants.FIELD_CONTENTS, userQuery)) {
+            CharTermAttribute charTermAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                String term = charTermAttribute.toString();
+                Integer count = termFrequency.get(term);
+                termFrequency.put(term, count == null ? 1 : count + 1);
+            }
+            tokenStream.end();
+        }
+
+        return termFrequency;
+    }
+
     /**
      * Create TermFrequency Map from the given document
      * @param document matched documents
      * @return Term-Frequency Map
      */
     public static HashMap<String, Integer> makeQuery(String document) {
-        Set words = new HashSet();
-        List<String> tokens = Arrays.asList(document.trim().split(" "));
-        for (String token : tokens) {
-            words.add(token);
-        }
-
         HashMap<String, Integer> termFrequency = new HashMap<>();
-        for(Object object : words) {
-            String term = (String) object;
-            int count = 0;
-            for (String token : tokens) {
-                if (term.equalsIgnoreCase(token)) {
-                    count ++;
-                }
-            }
-            termFrequency.put(term, count);
+        for (String token : document.trim().split(" ")) {
+            Integer count = termFrequency.get(token);
+            termFrequency.put(token, count == null ? 1 : count + 1);
         }
 
         return termFrequency;
@@ -86,18 +156,18 @@ public class Utils {
      * @return Term-Frequency Map
      */
     public static HashMap<String, Integer> getTermFrequencyOfEachWord(String document, List<String> terms) {
-        HashMap<String, Integer> termFrequency = new HashMap<>();
-        // Explode the document into an ArrayList
-        String[] tokens = document.split(" ");
-        for(String term : terms) {
-            int count = 0;
-            for (String token : tokens) {
-                if (term.equalsIgnoreCase(token)) {
-                    count ++;
-                }
-            }
+        // Count every token once, then look the terms up
+        HashMap<String, Integer> tokenFrequency = new HashMap<>();
+        for (String token : document.split(" ")) {
+            String key = token.toLowerCase();
+            Integer count = tokenFrequency.get(key);
+            tokenFrequency.put(key, count == null ? 1 : count + 1);
+        }
 
-            termFrequency.put(term, count);
+        HashMap<String, Integer> termFrequency = new HashMap<>();
+        for (String term : terms) {
+            Integer count = tokenFrequency.get(term.toLowerCase());
+            termFrequency.put(term, count == null ? 0 : count);
         }
         return termFrequency;
     }
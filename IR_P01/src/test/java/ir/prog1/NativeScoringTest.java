@@ -0,0 +1,161 @@
+package ir.prog1;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The ranking models rank the documents the same with and without native scoring.
+ */
+public class NativeScoringTest {
+
+    private static final String[] DOCUMENTS = {
+            "<html><head><title>Information retrieval</title></head><body>"
+                    + "<p>Information retrieval finds documents that answer a query in a large collection.</p></body></html>",
+            "<html><head><title>Search engines</title></head><body>"
+                    + "<p>A search engine crawls pages, indexes their words and ranks the pages for a query.</p></body></html>",
+            "<html><head><title>Inverted index</title></head><body>"
+                    + "<p>An inverted index maps every word to the documents containing it, with the frequency "
+                    + "of the word in each document. The index is the core of every search engine.</p></body></html>",
+            "<html><head><title>Vector space model</title></head><body>"
+                    + "<p>The vector space model ranks documents by the cosine of the angle between the query "
+                    + "vector and the document vector, weighting each word by its inverse document frequency.</p></body></html>",
+            "<html><head><title>Okapi BM25</title></head><body>"
+                    + "<p>Okapi BM25 ranks documents by the frequency of the query words, saturated, and "
+                    + "normalizes the frequency by the length of the document.</p></body></html>",
+            "<html><head><title>Web crawler</title></head><body>"
+                    + "<p>A web crawler fetches pages, follows their links and hands the pages to the indexer. "
+                    + "A polite crawler waits between the requests to a host.</p></body></html>",
+            "<html><head><title>Stemming</title></head><body>"
+                    + "<p>Stemming reduces words to their stem, so ranking, ranked and ranks match the query word rank.</p></body></html>",
+            "<html><head><title>Query processing</title></head><body>"
+                    + "<p>Query processing walks the postings of the query words in the index and keeps the "
+                    + "best scored documents in a heap. Skipping documents that cannot make the heap speeds "
+                    + "up the query on a large index.</p></body></html>"
+    };
+
+    // terms of less than half the documents, which BM25 scores above 0
+    private static final String[] QUERIES = {
+            "heap",
+            "search engine index",
+            "word frequency",
+            "web crawler pages links",
+            "cosine vector space",
+            "inverse document frequency of a stem"
+    };
+
+    // native scores are rounded to float
+    private static final double TOLERANCE = 1e-5;
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static String indexPath;
+
+    private boolean nativeScoring;
+    private boolean pruning;
+
+    @BeforeClass
+    public static void indexDocuments() throws IOException {
+        File docs = FOLDER.newFolder("docs");
+        for (int i = 0; i < DOCUMENTS.length; i++) {
+            Files.write(new File(docs, "doc" + i + LuceneConstants.FILE_EXTENSION).toPath(),
+                    DOCUMENTS[i].getBytes(StandardCharsets.UTF_8));
+        }
+
+        indexPath = FOLDER.newFolder("index").getPath();
+        IndexFiles.indexDocuments(docs.getPath(), indexPath, 1);
+    }
+
+    @Before
+    public void saveConstants() {
+        nativeScoring = LuceneConstants.NATIVE_SCORING;
+        pruning = LuceneConstants.PRUNING;
+    }
+
+    @After
+    public void restoreConstants() {
+        LuceneConstants.NATIVE_SCORING = nativeScoring;
+        LuceneConstants.PRUNING = pruning;
+    }
+
+    @Test
+    public void vectorSpaceMatchesNativeScoring() throws IOException {
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            VSM vsm = VSM.loadStatistics(indexReader, indexPath);
+
+            for (String query : QUERIES) {
+                HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(query);
+
+                LuceneConstants.NATIVE_SCORING = false;
+                TopKCollector expected = new TopKCollector(DOCUMENTS.length);
+                vsm.collectTopDocuments(indexReader, hashedQuery, expected);
+
+                LuceneConstants.NATIVE_SCORING = true;
+                TopKCollector actual = new TopKCollector(DOCUMENTS.length);
+                vsm.collectTopDocuments(indexReader, hashedQuery, actual);
+
+                assertSameRanking(query, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void bm25MatchesNativeScoring() throws IOException {
+        assertBm25MatchesNativeScoring(false);
+    }
+
+    @Test
+    public void prunedBm25MatchesNativeScoring() throws IOException {
+        assertBm25MatchesNativeScoring(true);
+    }
+
+    private static void assertBm25MatchesNativeScoring(boolean pruning) throws IOException {
+        LuceneConstants.PRUNING = pruning;
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            BM25 bm25 = BM25.loadStatistics(indexReader, indexPath);
+
+            for (String query : QUERIES) {
+                HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(query);
+
+                LuceneConstants.NATIVE_SCORING = false;
+                TopKCollector expected = new TopKCollector(DOCUMENTS.length);
+                bm25.collectTopDocuments(indexReader, hashedQuery, expected);
+
+                LuceneConstants.NATIVE_SCORING = true;
+                TopKCollector actual = new TopKCollector(DOCUMENTS.length);
+                bm25.collectTopDocuments(indexReader, hashedQuery, actual);
+
+                assertSameRanking(query, expected, actual);
+            }
+        }
+    }
+
+    private static void assertSameRanking(String query, TopKCollector expected, TopKCollector actual) {
+        expected.sort();
+        actual.sort();
+
+        assertTrue("no documents for '" + query + "'", expected.size() > 0);
+        assertEquals("documents of '" + query + "'", expected.size(), actual.size());
+        for (int rank = 0; rank < expected.size(); rank++) {
+            assertEquals("document " + rank + " of '" + query + "'", expected.getDocId(rank), actual.getDocId(rank));
+            assertEquals("score " + rank + " of '" + query + "'", expected.getScore(rank), actual.getScore(rank),
+                    TOLERANCE * expected.getScore(rank));
+        }
+    }
+}
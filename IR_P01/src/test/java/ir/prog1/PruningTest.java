@@ -0,0 +1,179 @@
+package ir.prog1;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BM25 keeps the same top documents with and without pruning, over an index of many blocks.
+ */
+public class PruningTest {
+
+    private static final String[] WORDS = {
+            "index", "query", "document", "ranking", "crawler", "search", "engine", "posting",
+            "vector", "cosine", "okapi", "heap", "block", "bound", "cursor", "pivot",
+            "stemming", "token", "title", "length", "norm", "commit", "segment", "merge",
+            "fetch", "robots", "politeness", "frontier", "seeder", "mirror", "shingle", "fingerprint"
+    };
+
+    private static final String[] QUERIES = {
+            "fingerprint",
+            "mirror shingle",
+            "seeder frontier politeness",
+            "commit segment merge fetch",
+            "okapi heap block bound cursor pivot",
+            "length norm fingerprint"
+    };
+
+    private static final int[] K = {1, 3, 10};
+
+    // more than two blocks of docIDs
+    private static final int NUM_DOCUMENTS = 600;
+    private static final int BLOCK_SIZE = 128;
+    // every few documents repeats an earlier one, so some documents tie
+    private static final int DUPLICATE_INTERVAL = 5;
+
+    private static final double TOLERANCE = 1e-9;
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static String indexPath;
+    private static int blockSize;
+
+    private boolean nativeScoring;
+    private boolean pruning;
+
+    @BeforeClass
+    public static void indexDocuments() throws IOException {
+        blockSize = LuceneConstants.BLOCK_SIZE;
+        LuceneConstants.BLOCK_SIZE = BLOCK_SIZE;
+
+        File docs = FOLDER.newFolder("docs");
+        Random random = new Random(42);
+        String[] texts = new String[NUM_DOCUMENTS];
+        for (int i = 0; i < NUM_DOCUMENTS; i++) {
+            texts[i] = i % DUPLICATE_INTERVAL == DUPLICATE_INTERVAL - 1 ? texts[random.nextInt(i)] : randomText(random);
+            Files.write(new File(docs, String.format("doc%04d", i) + LuceneConstants.FILE_EXTENSION).toPath(),
+                    ("<html><head><title>Document</title></head><body><p>" + texts[i] + "</p></body></html>")
+                            .getBytes(StandardCharsets.UTF_8));
+        }
+
+        indexPath = FOLDER.newFolder("index").getPath();
+        IndexFiles.indexDocuments(docs.getPath(), indexPath, 1);
+    }
+
+    @AfterClass
+    public static void restoreBlockSize() {
+        LuceneConstants.BLOCK_SIZE = blockSize;
+    }
+
+    @Before
+    public void saveConstants() {
+        nativeScoring = LuceneConstants.NATIVE_SCORING;
+        pruning = LuceneConstants.PRUNING;
+        LuceneConstants.NATIVE_SCORING = false;
+    }
+
+    @After
+    public void restoreConstants() {
+        LuceneConstants.NATIVE_SCORING = nativeScoring;
+        LuceneConstants.PRUNING = pruning;
+    }
+
+    @Test
+    public void prunedBm25MatchesExhaustiveBm25() throws IOException {
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            BM25 bm25 = BM25.loadStatistics(indexReader, indexPath);
+            IndexStatistics statistics = IndexStatistics.open(indexReader, indexPath);
+            assertEquals(BLOCK_SIZE, statistics.getBlockSize());
+            assertTrue("blocks", indexReader.maxDoc() > 2 * BLOCK_SIZE);
+
+            boolean skipped = false;
+            for (String query : QUERIES) {
+                HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(query);
+
+                for (int k : K) {
+                    LuceneConstants.PRUNING = false;
+                    TopKCollector expected = new TopKCollector(k);
+                    bm25.collectTopDocuments(indexReader, hashedQuery, expected);
+
+                    LuceneConstants.PRUNING = true;
+                    TopKCollector actual = new TopKCollector(k);
+                    bm25.collectTopDocuments(indexReader, hashedQuery, actual);
+
+                    assertTrue("exhaustive total hits of '" + query + "'", expected.isTotalHitsExact());
+                    skipped |= !actual.isTotalHitsExact();
+                    assertSameRanking(query + "' top " + k, expected, actual);
+                }
+            }
+            assertTrue("no documents were skipped", skipped);
+        }
+    }
+
+    @Test
+    public void duplicatesTie() throws IOException {
+        LuceneConstants.PRUNING = true;
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            BM25 bm25 = BM25.loadStatistics(indexReader, indexPath);
+
+            boolean tied = false;
+            for (String query : QUERIES) {
+                TopKCollector collector = new TopKCollector(10);
+                bm25.collectTopDocuments(indexReader, Utils.analyzeQuery(query), collector);
+                collector.sort();
+                for (int rank = 1; rank < collector.size(); rank++) {
+                    if (collector.getScore(rank) == collector.getScore(rank - 1)) {
+                        tied = true;
+                        assertTrue("lower docId first", collector.getDocId(rank) > collector.getDocId(rank - 1));
+                    }
+                }
+            }
+            assertTrue("no ties in the top documents", tied);
+        }
+    }
+
+    private static void assertSameRanking(String query, TopKCollector expected, TopKCollector actual) {
+        expected.sort();
+        actual.sort();
+
+        assertFalse("no documents for '" + query, expected.size() == 0);
+        assertEquals("documents of '" + query, expected.size(), actual.size());
+        for (int rank = 0; rank < expected.size(); rank++) {
+            assertEquals("document " + rank + " of '" + query, expected.getDocId(rank), actual.getDocId(rank));
+            assertEquals("score " + rank + " of '" + query, expected.getScore(rank), actual.getScore(rank),
+                    TOLERANCE * expected.getScore(rank));
+        }
+    }
+
+    /**
+     * @return 10 to 60 words, the first words of the list far more frequent than the last ones
+     */
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = 10 + random.nextInt(51);
+        for (int i = 0; i < length; i++) {
+            double r = random.nextDouble();
+            text.append(WORDS[(int) (WORDS.length * r * r * r)]).append(' ');
+        }
+        return text.toString();
+    }
+}
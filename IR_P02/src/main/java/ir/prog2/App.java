@@ -41,13 +41,22 @@ public class App {
         String indexPath  = Preconditions.checkNotNull(args[2], "Index path should not be null");
         String userQuery  = Preconditions.checkNotNull(args[3], "Query should not be null");
 
+        // HttpURLConnection keeps http.maxConnections idle connections per host (5 by default), read
+        // once for the whole process, so every fetcher of a host can reuse its connection
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(5, LuceneConstants.CRAWL_HOST_CONNECTIONS)));
+        }
+
         int depth = Integer.parseInt(crawlDepth);
         URLIndexer urlIndexer = new URLIndexer(depth, seedURL);
 
         // Check if user wants re-create the index or use the existing indexing folder.
         boolean flag;
         final Path indexDir = Paths.get(indexPath);
-        if (indexDir.toFile().exists()) {
+        if (urlIndexer.hasUnfinishedCrawl(indexPath)) {
+            System.out.println("Found an unfinished crawl of the seed URL, resuming it.");
+            flag = true;
+        } else if (indexDir.toFile().exists()) {
 
             System.out.println("Index folder Path already exists !");
             Directory directory = FSDirectory.open(Paths.get(indexPath));
@@ -85,30 +94,21 @@ public class App {
         }
 
         System.out.println("\nSearching for : " + userQuery);
-        String query = DocumentPreProcessing.dataPreProcessing(userQuery);
-
-        VSM vsm = new VSM(indexPath);
-        vsm.calculateIDFandTF(indexPath);
-        HashMap<String, Integer> hashedQuery = Utils.makeQuery(query);
+        HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(userQuery);
 
-        HashMap<String, Double> matchedDocument = new HashMap<>();
-        for (Map.Entry<String, HashMap<String, Integer>> document : vsm.documentTFMappings.entrySet()) {
-            String documentId = document.getKey();
-            HashMap<String, Integer> value = document.getValue();
+        TopKCollector collector = new TopKCollector(LuceneConstants.RESULTS_OFFSET + LuceneConstants.RESULTS_COUNT);
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            VSM vsm = VSM.loadStatistics(indexReader, indexPath);
 
-            Set flattenUniqueTerms = vsm.getFlattenTerms(value, hashedQuery);
-
-            HashMap<String, Double> doc = vsm.createTFIDFDocumentQueryMatrix(flattenUniqueTerms, value);
-            HashMap<String, Double> q   = vsm.createTFIDFDocumentQueryMatrix(flattenUniqueTerms, hashedQuery);
-
-            double similarityScore = vsm.cosineSimilarity(doc, q);
-            if (similarityScore > 0.0) {
-                Double score = similarityScore;
-                score = Double.parseDouble(String.format("%.5f", score));
-                matchedDocument.put(documentId, score);
+            // walk only the postings of the query terms
+            HashMap<Integer, Double> scores = vsm.calculateCosineScores(indexReader, hashedQuery);
+            for (Map.Entry<Integer, Double> document : scores.entrySet()) {
+                if (document.getValue() > 0.0) {
+                    collector.collect(document.getKey(), document.getValue());
+                }
             }
         }
 
-        Utils.printRankedDocuments(indexPath, matchedDocument);
+        Utils.printRankedDocuments(indexPath, collector, LuceneConstants.RESULTS_OFFSET);
     }
 }
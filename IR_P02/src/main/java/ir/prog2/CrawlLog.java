@@ -0,0 +1,285 @@
+package ir.prog2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of a crawl, so an interrupted crawl resumes where it left off.
+ *
+ * The records are lines of tab separated fields:
+ * <pre>
+ * H seed maxDepth                 the crawl of the log, first record
+ * D depth url                     url discovered at the depth
+ * S depth                         every url of the depth is discovered, the depth is crawled
+ * F url indexed simHash links...  url fetched, its document committed (or skipped as a near-duplicate)
+ * C                               crawl finished
+ * </pre>
+ * F records are appended only after the IndexWriter committed their documents, so a page is in
+ * the log only once it is in the index. A line cut off by a crash (no trailing newline) is ignored,
+ * and so are the D records of a depth without its S record.
+ */
+public class CrawlLog implements Closeable {
+
+    private final BufferedWriter writer;
+
+    // state of the crawl read from the log
+    private int depth;
+    private final List<String> frontier = new ArrayList<>();
+    private final FingerprintSet visited = new FingerprintSet();
+    private final Map<String, FetchedRecord> fetched = new HashMap<>();
+    private final List<Long> simHashes = new ArrayList<>();
+    private int indexedCount;
+
+    /**
+     * Opens the log of a crawl. An unfinished log of the same crawl is read and appended to,
+     * otherwise a new log is started with the seed at depth 0.
+     *
+     * @param file log file
+     * @param seedUrl normalized seeder url
+     * @param maxDepth crawling depth
+     * @throws IOException If there is a low-level I/O error
+     */
+    public CrawlLog(Path file, String seedUrl, int maxDepth) throws IOException {
+
+        if (isResumable(file, seedUrl, maxDepth)) {
+            read(file);
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } else {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            write("H", seedUrl, String.valueOf(maxDepth));
+            startDepth(0, Collections.singletonList(seedUrl));
+            frontier.add(seedUrl);
+            visited.add(seedUrl);
+        }
+    }
+
+    /**
+     * @param file log file
+     * @param seedUrl normalized seeder url
+     * @param maxDepth crawling depth
+     * @return true if the file is the log of the same crawl and the crawl didn't finish
+     * @throws IOException If there is a low-level I/O error
+     */
+    public static boolean isResumable(Path file, String seedUrl, int maxDepth) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] header = readRecord(reader);
+            if (header == null || !Arrays.equals(header, new String[]{"H", seedUrl, String.valueOf(maxDepth)})) {
+                return false;
+            }
+
+            String[] record;
+            while ((record = readRecord(reader)) != null) {
+                if (record[0].equals("C")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replays the records of an unfinished crawl.
+     */
+    private void read(Path file) throws IOException {
+
+        List<String[]> discovered = new ArrayList<>();
+        depth = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] record;
+            while ((record = readRecord(reader)) != null) {
+                switch (record[0]) {
+                    case "D":
+                        discovered.add(record);
+                        break;
+                    case "S":
+                        depth = Integer.parseInt(record[1]);
+                        break;
+                    case "F":
+                        FetchedRecord page = new FetchedRecord(Boolean.parseBoolean(record[2]),
+                                Long.parseLong(record[3]), Arrays.asList(record).subList(4, record.length));
+                        fetched.put(record[1], page);
+                        if (page.indexed) {
+                            indexedCount++;
+                            simHashes.add(page.simHash);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        for (String[] record : discovered) {
+            int urlDepth = Integer.parseInt(record[1]);
+            if (urlDepth <= depth) {
+                visited.add(record[2]);
+            }
+            if (urlDepth == depth) {
+                frontier.add(record[2]);
+            }
+        }
+    }
+
+    /**
+     * Reads a record, a last line without newline was cut off and is skipped.
+     * @return fields of the record, null at the end of the log
+     */
+    private static String[] readRecord(Reader reader) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return line.toString().split("\t");
+            }
+            line.append((char) c);
+        }
+        return null;
+    }
+
+    /**
+     * @return depth to crawl, the last depth that started
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return urls of the depth to crawl, in the order they were discovered
+     */
+    public List<String> getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * @return urls discovered up to the depth to crawl
+     */
+    public FingerprintSet getVisited() {
+        return visited;
+    }
+
+    /**
+     * @param url url
+     * @return record of the url if it was fetched before, null otherwise
+     */
+    public FetchedRecord getFetched(String url) {
+        return fetched.get(url);
+    }
+
+    /**
+     * @return number of pages in the committed index
+     */
+    public int getIndexedCount() {
+        return indexedCount;
+    }
+
+    /**
+     * @return SimHashes of the indexed pages
+     */
+    public List<Long> getSimHashes() {
+        return simHashes;
+    }
+
+    /**
+     * Logs the urls of a depth and the start of its crawl.
+     * @param urlDepth depth of the urls
+     * @param urls urls discovered at the depth
+     * @throws IOException If there is a low-level I/O error
+     */
+    public synchronized void startDepth(int urlDepth, List<String> urls) throws IOException {
+        for (String url : urls) {
+            write("D", String.valueOf(urlDepth), url);
+        }
+        write("S", String.valueOf(urlDepth));
+        writer.flush();
+    }
+
+    /**
+     * Logs a fetched page, once its document is committed. Call flush after the pages of a commit.
+     * @param url url of the page
+     * @param indexed false if the page was a near-duplicate
+     * @param simHash SimHash of the page
+     * @param links links of the page
+     * @throws IOException If there is a low-level I/O error
+     */
+    public synchronized void fetched(String url, boolean indexed, long simHash, List<String> links) throws IOException {
+        List<String> fields = new ArrayList<>(links.size() + 4);
+        fields.add("F");
+        fields.add(url);
+        fields.add(String.valueOf(indexed));
+        fields.add(String.valueOf(simHash));
+        fields.addAll(links);
+        write(fields.toArray(new String[0]));
+    }
+
+    /**
+     * Logs the end of the crawl, the log won't be resumed.
+     * @throws IOException If there is a low-level I/O error
+     */
+    public synchronized void finish() throws IOException {
+        write("C");
+        writer.flush();
+    }
+
+    /**
+     * @throws IOException If there is a low-level I/O error
+     */
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void write(String... fields) throws IOException {
+        // normalized urls don't have tabs or newlines, they are percent-encoded
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write('\t');
+            }
+            writer.write(fields[i]);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * A page fetched before the crawl was interrupted.
+     */
+    public static final class FetchedRecord {
+
+        final boolean indexed;
+        final long simHash;
+        final List<String> links;
+
+        FetchedRecord(boolean indexed, long simHash, List<String> links) {
+            this.indexed = indexed;
+            this.simHash = simHash;
+            this.links = links;
+        }
+
+        /**
+         * @return links of the page
+         */
+        public List<String> getLinks() {
+            return links;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ir.prog2;
+
+/**
+ * Thread-safe set of strings kept as 64-bit fingerprints, for the visited urls of a crawl.
+ *
+ * The fingerprints are one open addressing array of longs, so a url costs 16 bytes at most
+ * instead of the string and the entry of a HashSet, and adding or looking up a url is O(1).
+ * Two urls with the same fingerprint are taken for the same url, with 64-bit fingerprints this
+ * is unlikely (about n^2 / 2^65 for n urls) even for very large crawls.
+ */
+public class FingerprintSet {
+
+    // 0 marks an empty slot, the fingerprint 0 is stored as 1
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int size;
+
+    /**
+     * Initializes a new, empty FingerprintSet instance.
+     */
+    public FingerprintSet() {
+        this.slots = new long[1024];
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the chars of a string, with the final mix of MurmurHash3
+     * so the low bits used for the slots depend on all the chars.
+     * @param string string
+     * @return fingerprint of the string
+     */
+    public static long fingerprint(CharSequence string) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Adds a string to the set.
+     * @param string string
+     * @return true if the string wasn't in the set
+     */
+    public synchronized boolean add(CharSequence string) {
+        long fingerprint = toSlotValue(fingerprint(string));
+
+        int slot = find(slots, fingerprint);
+        if (slots[slot] == fingerprint) {
+            return false;
+        }
+        slots[slot] = fingerprint;
+        size++;
+
+        // grow at a load of 1/2, so the probe sequences stay short
+        if (size * 2 > slots.length) {
+            long[] grown = new long[slots.length * 2];
+            for (long value : slots) {
+                if (value != EMPTY) {
+                    grown[find(grown, value)] = value;
+                }
+            }
+            slots = grown;
+        }
+        return true;
+    }
+
+    /**
+     * @param string string
+     * @return true if the string was added to the set
+     */
+    public synchronized boolean contains(CharSequence string) {
+        long fingerprint = toSlotValue(fingerprint(string));
+        return slots[find(slots, fingerprint)] == fingerprint;
+    }
+
+    /**
+     * @return number of strings in the set
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Linear probing from the slot of the low bits of the fingerprint.
+     * @return slot of the fingerprint, or the empty slot it belongs in
+     */
+    private static int find(long[] slots, long fingerprint) {
+        int mask = slots.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (slots[slot] != EMPTY && slots[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long toSlotValue(long fingerprint) {
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+}
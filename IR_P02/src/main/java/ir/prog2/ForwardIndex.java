@@ -0,0 +1,367 @@
+package ir.prog2;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Term frequencies of every document, by docID, in a memory-mapped file next to the index.
+ *
+ * The file is written on demand, by the first calculateIDFandTF of a commit, with a pass over
+ * the term vectors, and read in place afterwards, so the frequencies use no heap. Only the
+ * models loaded by calculateIDFandTF score single documents from it, the rankers walk the
+ * postings, so the indexer doesn't write it.
+ * The terms of a document are stored as ordinals of the term dictionary of the statistics,
+ * in increasing order, next to their frequencies (CSR layout).
+ *
+ * Layout (big-endian):
+ * header: magic, format version, index version, maxDoc, number of postings (padded to 32 bytes)
+ * postings: term ordinal (int), then frequency (int)
+ * per docID: position of its first posting (long, one extra for the end)
+ *
+ * The file is mapped in chunks of 1 GB, so it can be larger than a single mapping.
+ * Deleted documents and documents without a term vector have no postings.
+ */
+public class ForwardIndex {
+
+    private static final int MAGIC = 0x49524657; // "IRFW"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 32;
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long indexVersion;
+    private final int maxDoc;
+    private final long numberOfPostings;
+    private final long startsOffset;
+
+    /**
+     * Initializes a new ForwardIndex instance over the mapped file.
+     * @param chunks mapped chunks of the file
+     * @throws IOException if the file is not a forward index file
+     */
+    private ForwardIndex(MappedByteBuffer[] chunks) throws IOException {
+
+        ByteBuffer header = chunks.length == 0 ? null : chunks[0];
+        if (header == null || header.capacity() < HEADER_LENGTH || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a forward index file.");
+        }
+        if (header.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported forward index file version: " + header.getInt(4));
+        }
+
+        this.chunks = chunks;
+        this.indexVersion = header.getLong(8);
+        this.maxDoc = header.getInt(16);
+        this.numberOfPostings = header.getLong(20);
+        this.startsOffset = HEADER_LENGTH + 8 * numberOfPostings;
+    }
+
+    /**
+     * Path of the forward index file for the given index
+     * @param indexPath index path
+     * @return forward index file path
+     */
+    public static Path getForwardIndexPath(String indexPath) {
+        return Paths.get(indexPath, LuceneConstants.FORWARD_INDEX_FILE);
+    }
+
+    /**
+     * Memory-maps the forward index file of the index.
+     * @param indexPath index path
+     * @return forward index
+     * @throws IOException if the file couldnot be read
+     */
+    public static ForwardIndex open(String indexPath) throws IOException {
+        return open(getForwardIndexPath(indexPath));
+    }
+
+    /**
+     * Memory-maps a forward index file in chunks of 1 GB.
+     * @param file forward index file
+     * @return forward index
+     * @throws IOException if the file couldnot be read
+     */
+    private static ForwardIndex open(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int numberOfChunks = (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numberOfChunks];
+            for (int i = 0; i < numberOfChunks; i++) {
+                long position = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_MASK + 1, size - position));
+            }
+            return new ForwardIndex(chunks);
+        }
+    }
+
+    /**
+     * Memory-maps the forward index file if it matches the given reader, otherwise
+     * writes it from the reader first.
+     * @param indexReader reader of the index
+     * @param statistics statistics of the reader, their dictionary numbers the terms
+     * @param indexPath index path
+     * @return forward index
+     * @throws IOException if the index or the file couldnot be read
+     */
+    public static ForwardIndex open(DirectoryReader indexReader, IndexStatistics statistics, String indexPath) throws IOException {
+
+        if (Files.exists(getForwardIndexPath(indexPath))) {
+            try {
+                ForwardIndex forwardIndex = open(indexPath);
+                if (forwardIndex.isCurrent(indexReader)) {
+                    return forwardIndex;
+                }
+            } catch (IOException e) {
+                // unreadable file, write it again
+            }
+        }
+
+        return write(indexReader, statistics, indexPath);
+    }
+
+    /**
+     * Writes the term frequencies of every document of the reader next to the index, with
+     * one pass over the term vectors.
+     * @param indexReader reader of the index
+     * @param statistics statistics of the reader, their dictionary numbers the terms
+     * @param indexPath index path
+     * @return forward index of the reader, mapped from the written file
+     * @throws IOException if the index couldnot be read or the file couldnot be written
+     */
+    public static ForwardIndex write(DirectoryReader indexReader, IndexStatistics statistics, String indexPath) throws IOException {
+        Preconditions.checkArgument(statistics.isCurrent(indexReader), "The statistics should belong to the reader.");
+
+        IndexStatistics.TermOrdinals ordinals = statistics.getTermOrdinals();
+        int maxDoc = indexReader.maxDoc();
+        try (Writer writer = new Writer(indexPath, indexReader.getVersion(), maxDoc)) {
+            Bits liveDocs = MultiFields.getLiveDocs(indexReader);
+            for (int docId = 0; docId < maxDoc; docId++) {
+                if (liveDocs != null && !liveDocs.get(docId)) {
+                    continue;
+                }
+
+                Terms termVector = indexReader.getTermVector(docId, LuceneConstants.FIELD_CONTENTS);
+                if (termVector == null) {
+                    continue;
+                }
+
+                // the term vector is sorted like the dictionary, so the ordinals come in increasing order
+                writer.startDocument(docId);
+                TermsEnum iterator = termVector.iterator();
+                BytesRef term;
+                while ((term = iterator.next()) != null) {
+                    int ordinal = ordinals.get(term);
+                    if (ordinal >= 0) {
+                        writer.addPosting(ordinal, (int) iterator.totalTermFreq());
+                    }
+                }
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Checks if the forward index was written from the same commit as the reader
+     * @param indexReader reader of the index
+     * @return true if the forward index belongs to the reader
+     */
+    public boolean isCurrent(DirectoryReader indexReader) {
+        return indexReader.getVersion() == indexVersion && indexReader.maxDoc() == maxDoc;
+    }
+
+    /**
+     * @return number of docIDs, including the deleted documents
+     */
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    /**
+     * @return number of (term, frequency) entries of all the documents
+     */
+    public long getNumberOfPostings() {
+        return numberOfPostings;
+    }
+
+    /**
+     * @param docId id of the document
+     * @return position of the first posting of the document
+     */
+    public long getStart(int docId) {
+        return getLong(startsOffset + 8L * docId);
+    }
+
+    /**
+     * @param docId id of the document
+     * @return position after the last posting of the document
+     */
+    public long getEnd(int docId) {
+        return getLong(startsOffset + 8L * (docId + 1));
+    }
+
+    /**
+     * @param position position between getStart and getEnd of a document
+     * @return term ordinal at the position
+     */
+    public int getTermOrdinal(long position) {
+        return getInt(HEADER_LENGTH + 8 * position);
+    }
+
+    /**
+     * @param position position between getStart and getEnd of a document
+     * @return term frequency at the position
+     */
+    public int getFrequency(long position) {
+        return getInt(HEADER_LENGTH + 8 * position + 4);
+    }
+
+    /**
+     * Frequency of a term within a document
+     * @param docId id of the document
+     * @param ordinal ordinal of the term
+     * @return frequency, or 0 if the document doesn't contain the term
+     */
+    public int getTermFrequency(int docId, int ordinal) {
+
+        // binary search, the ordinals of a document are increasing
+        long low = getStart(docId);
+        long high = getEnd(docId) - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int middleOrdinal = getTermOrdinal(middle);
+            if (middleOrdinal < ordinal) {
+                low = middle + 1;
+            } else if (middleOrdinal > ordinal) {
+                high = middle - 1;
+            } else {
+                return getFrequency(middle);
+            }
+        }
+
+        return 0;
+    }
+
+    private int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    private long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Streams the postings of the documents, in docID order, to a forward index file.
+     * Values are 8 bytes wide and aligned, so none of them crosses a chunk.
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final Path temporary;
+        private final Path target;
+        private final DataOutputStream output;
+        private final long indexVersion;
+        private final long[] starts;
+        private long numberOfPostings;
+        private int nextDocId;
+        private boolean finished;
+
+        /**
+         * Initializes a new Writer instance, writing to a temporary file next to the index.
+         * @param indexPath index path
+         * @param indexVersion version of the index commit
+         * @param maxDoc number of docIDs
+         * @throws IOException if the file couldnot be created
+         */
+        Writer(String indexPath, long indexVersion, int maxDoc) throws IOException {
+            this.target = getForwardIndexPath(indexPath);
+            this.temporary = Files.createTempFile(Paths.get(indexPath), LuceneConstants.FORWARD_INDEX_FILE, ".tmp");
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+            this.indexVersion = indexVersion;
+            this.starts = new long[maxDoc + 1];
+
+            // the header is written again once the number of postings is known
+            output.write(new byte[HEADER_LENGTH]);
+        }
+
+        /**
+         * Starts the postings of a document, documents come in increasing docID order.
+         * Skipped docIDs get no postings.
+         * @param docId id of the document
+         */
+        void startDocument(int docId) {
+            while (nextDocId <= docId) {
+                starts[nextDocId++] = numberOfPostings;
+            }
+        }
+
+        /**
+         * Adds a posting to the current document, ordinals come in increasing order.
+         * @param ordinal ordinal of the term
+         * @param frequency frequency of the term in the document
+         * @throws IOException if the file couldnot be written
+         */
+        void addPosting(int ordinal, int frequency) throws IOException {
+            output.writeInt(ordinal);
+            output.writeInt(frequency);
+            numberOfPostings++;
+        }
+
+        /**
+         * Writes the document starts and the header, then moves the file in place.
+         * The file is mapped before it is moved, so the returned forward index is the one
+         * written here even if another process moves its own file in place right after.
+         * @return forward index of the written file
+         * @throws IOException if the file couldnot be written
+         */
+        ForwardIndex finish() throws IOException {
+            int maxDoc = starts.length - 1;
+            startDocument(maxDoc);
+            for (long start : starts) {
+                output.writeLong(start);
+            }
+            output.close();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(indexVersion).putInt(maxDoc).putLong(numberOfPostings);
+            header.rewind();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.write(header, 0);
+            }
+
+            ForwardIndex forwardIndex = open(temporary);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return forwardIndex;
+        }
+
+        /**
+         * Removes the temporary file if the writer wasn't finished.
+         * @throws IOException if the file couldnot be removed
+         */
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                output.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+}
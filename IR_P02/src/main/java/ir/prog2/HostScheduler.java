@@ -0,0 +1,283 @@
+package ir.prog2;
+
+import org.jsoup.Connection;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Politeness of the crawler towards the hosts of a frontier.
+ *
+ * The urls of a frontier are queued per host, and each host queue is drained by at most
+ * connectionsPerHost fetches at a time, so a host never gets more requests at a time however many
+ * fetcher threads there are. Requests to a host start at least the crawl delay apart, the
+ * configured one or the Crawl-delay of its robots.txt if that is longer, up to the maximum delay
+ * so a huge Crawl-delay doesn't stall the crawl. The next fetch of a host is scheduled on the
+ * executor at the time the host allows it, so no fetcher thread waits for a host while the urls
+ * of the other hosts are ready. The robots.txt of a host is fetched once and cached for the crawl,
+ * urls it disallows aren't fetched.
+ *
+ * Connections are kept alive by HttpURLConnection, which Jsoup uses. Its cache keeps only
+ * http.maxConnections idle connections per host (5 by default), a setting of the whole process
+ * that App raises to the connections per host before crawling.
+ */
+public class HostScheduler {
+
+    private final int connectionsPerHost;
+    private final long crawlDelayMillis;
+    private final long maxCrawlDelayMillis;
+    private final boolean obeyRobots;
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Fetcher of the urls of a frontier.
+     * @param <T> result of a fetch
+     */
+    public interface Fetcher<T> {
+        /**
+         * @param url url to fetch
+         * @return result of the fetch
+         * @throws InterruptedException if the crawl is interrupted
+         */
+        T fetch(String url) throws InterruptedException;
+    }
+
+    /**
+     * Initializes a new HostScheduler instance.
+     * @param connectionsPerHost requests at a time to a host
+     * @param crawlDelayMillis milliseconds between the requests to a host
+     * @param maxCrawlDelayMillis longest Crawl-delay of a robots.txt that is honored, in milliseconds
+     * @param obeyRobots skip the urls the robots.txt of their host disallows
+     */
+    public HostScheduler(int connectionsPerHost, long crawlDelayMillis, long maxCrawlDelayMillis, boolean obeyRobots) {
+        Preconditions.checkArgument(connectionsPerHost > 0, "Connections per host should be greater than 0.");
+        Preconditions.checkArgument(crawlDelayMillis >= 0, "Crawl delay should not be negative.");
+        Preconditions.checkArgument(maxCrawlDelayMillis >= 0, "Maximum crawl delay should not be negative.");
+
+        this.connectionsPerHost = connectionsPerHost;
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.maxCrawlDelayMillis = maxCrawlDelayMillis;
+        this.obeyRobots = obeyRobots;
+    }
+
+    /**
+     * Fetches the urls of a frontier with the executor, politely per host.
+     *
+     * @param urls urls of the frontier
+     * @param executor fetcher threads, the fetches are scheduled on it at the time their host allows
+     * @param fetcher fetches a url
+     * @param <T> result of a fetch
+     * @return results in the order of the urls, null for the urls that are disallowed
+     * @throws InterruptedException if interrupted while waiting for the fetches
+     * @throws ExecutionException if a fetch failed
+     */
+    public <T> List<T> fetchAll(List<String> urls, ScheduledExecutorService executor, Fetcher<T> fetcher)
+            throws InterruptedException, ExecutionException {
+
+        Fetches<T> fetches = new Fetches<>(urls, executor, fetcher);
+
+        // positions of the urls per host, the hosts in the order of their first url
+        Map<Host, Queue<Integer>> queues = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            Host host = getHost(urls.get(i));
+            Queue<Integer> queue = queues.get(host);
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+                queues.put(host, queue);
+            }
+            queue.add(i);
+        }
+
+        for (Map.Entry<Host, Queue<Integer>> entry : queues.entrySet()) {
+            int drains = Math.min(connectionsPerHost, entry.getValue().size());
+            for (int i = 0; i < drains; i++) {
+                executor.execute(new Drain<>(entry.getKey(), entry.getValue(), fetches));
+            }
+        }
+
+        fetches.done.await();
+        if (fetches.failure.get() != null) {
+            throw new ExecutionException(fetches.failure.get());
+        }
+
+        List<T> ordered = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            ordered.add(fetches.results.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * @param url url
+     * @return state of the host of the url, urls that can't be parsed share one host
+     */
+    private Host getHost(String url) {
+        String origin;
+        try {
+            URL parsed = new URL(url);
+            origin = parsed.getProtocol() + "://" + parsed.getAuthority();
+        } catch (MalformedURLException e) {
+            origin = "";
+        }
+
+        Host host = hosts.get(origin);
+        if (host == null) {
+            Host added = hosts.putIfAbsent(origin, host = new Host(origin));
+            if (added != null) {
+                host = added;
+            }
+        }
+        return host;
+    }
+
+    /**
+     * @param url url
+     * @return path and query of the url, as matched by robots.txt
+     */
+    private static String getPathAndQuery(String url) {
+        try {
+            return new URL(url).getFile();
+        } catch (MalformedURLException e) {
+            return "/";
+        }
+    }
+
+    /**
+     * State of the fetches of a frontier, shared by the drains of every host.
+     */
+    private static final class Fetches<T> {
+
+        private final List<String> urls;
+        private final ScheduledExecutorService executor;
+        private final Fetcher<T> fetcher;
+        private final AtomicReferenceArray<T> results;
+        // counted down once per url, or to 0 by the first failure
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Fetches(List<String> urls, ScheduledExecutorService executor, Fetcher<T> fetcher) {
+            this.urls = urls;
+            this.executor = executor;
+            this.fetcher = fetcher;
+            this.results = new AtomicReferenceArray<>(urls.size());
+            this.done = new CountDownLatch(urls.size());
+        }
+
+        void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+            while (done.getCount() > 0) {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * One fetch at a time from the queue of a host. Each run fetches the url of its turn, then
+     * takes the next url of the host and schedules itself again at the next turn of the host,
+     * leaving the fetcher thread to the other hosts meanwhile.
+     */
+    private final class Drain<T> implements Runnable {
+
+        private final Host host;
+        private final Queue<Integer> queue;
+        private final Fetches<T> fetches;
+        // url to fetch on the next run, -1 before the first one
+        private int position = -1;
+
+        Drain(Host host, Queue<Integer> queue, Fetches<T> fetches) {
+            this.host = host;
+            this.queue = queue;
+            this.fetches = fetches;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (position >= 0) {
+                    fetches.results.set(position, fetches.fetcher.fetch(fetches.urls.get(position)));
+                    fetches.done.countDown();
+                }
+
+                Integer next;
+                while (fetches.failure.get() == null && (next = queue.poll()) != null) {
+                    if (host.getRules().isAllowed(getPathAndQuery(fetches.urls.get(next)))) {
+                        position = next;
+                        fetches.executor.schedule(this, host.reserveTurn(), TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    fetches.done.countDown();
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                fetches.fail(e);
+            }
+        }
+    }
+
+    /**
+     * robots.txt and time of the next request of a host.
+     */
+    private final class Host {
+
+        private final String origin;
+        private RobotsRules rules;
+        private long delayNanos;
+        private long nextStart = System.nanoTime();
+
+        Host(String origin) {
+            this.origin = origin;
+        }
+
+        /**
+         * @return rules of the robots.txt of the host, fetched on the first call
+         */
+        synchronized RobotsRules getRules() {
+            if (rules == null) {
+                rules = obeyRobots && !origin.isEmpty() ? fetchRules() : RobotsRules.ALLOW_ALL;
+                long delayMillis = Math.min(maxCrawlDelayMillis, rules.getCrawlDelayMillis());
+                delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(crawlDelayMillis, delayMillis));
+            }
+            return rules;
+        }
+
+        /**
+         * Reserves the next request to the host.
+         * @return nanoseconds till the request may start
+         */
+        synchronized long reserveTurn() {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextStart);
+            nextStart = start + delayNanos;
+            return start - now;
+        }
+
+        /**
+         * A host without robots.txt (any error) may be crawled.
+         */
+        private RobotsRules fetchRules() {
+            try {
+                Connection.Response response = URLIndexer.connect(origin + "/robots.txt")
+                        .ignoreHttpErrors(true).execute();
+                if (response.statusCode() == 200) {
+                    return RobotsRules.parse(response.body());
+                }
+            } catch (IOException e) {
+                // allow all
+            }
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package ir.prog2;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Precomputed term statistics of an index, kept in a binary file next to the index.
+ *
+ * The file is written by the indexer at commit time and memory-mapped by the rankers,
+ * so they don't have to walk every term vector of the index before the first query.
+ *
+ * Layout (big-endian):
+ * header: magic, format version, index version, maxDoc, numDocs, average length, number of terms
+ * per docID: document length (int), then TF-IDF vector norm (double)
+ * per term: offset into the term bytes (long, one extra for the end), then idf (double)
+ * term bytes: UTF-8 terms in index order
+ *
+ * Every section starts 8-byte aligned, so the file is mapped in chunks of 1 GB like the forward
+ * index without any value crossing a chunk. The per-term sections are streamed to temporary
+ * files while the dictionary is walked, and copied into the statistics file at the end.
+ */
+public class IndexStatistics {
+
+    private static final int MAGIC = 0x49525354; // "IRST"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 4 + 4 + 8 + 4 + 4;
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long indexVersion;
+    private final int maxDoc;
+    private final int numDocs;
+    private final double averageLength;
+    private final int numTerms;
+
+    private final long lengthsOffset;
+    private final long normsOffset;
+    private final long termOffsetsOffset;
+    private final long idfOffset;
+    private final long termBytesOffset;
+
+    /**
+     * Initializes a new IndexStatistics instance over the mapped file.
+     * @param chunks mapped chunks of the statistics file
+     * @throws IOException if the file is not a statistics file
+     */
+    private IndexStatistics(MappedByteBuffer[] chunks) throws IOException {
+
+        MappedByteBuffer header = chunks.length == 0 ? null : chunks[0];
+        if (header == null || header.capacity() < HEADER_LENGTH || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a statistics file.");
+        }
+        if (header.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported statistics file version: " + header.getInt(4));
+        }
+
+        this.chunks = chunks;
+        this.indexVersion = header.getLong(8);
+        this.maxDoc = header.getInt(16);
+        this.numDocs = header.getInt(20);
+        this.averageLength = header.getDouble(24);
+        this.numTerms = header.getInt(32);
+
+        this.lengthsOffset = HEADER_LENGTH;
+        this.normsOffset = align(lengthsOffset + 4L * maxDoc);
+        this.termOffsetsOffset = align(normsOffset + 8L * maxDoc);
+        this.idfOffset = align(termOffsetsOffset + 8L * (numTerms + 1));
+        this.termBytesOffset = align(idfOffset + 8L * numTerms);
+    }
+
+    /**
+     * @param offset end of a section
+     * @return start of the next section, the next multiple of 8
+     */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Path of the statistics file for the given index
+     * @param indexPath index path
+     * @return statistics file path
+     */
+    public static Path getStatisticsPath(String indexPath) {
+        return Paths.get(indexPath, LuceneConstants.STATISTICS_FILE);
+    }
+
+    /**
+     * Memory-maps the statistics file of the index.
+     * @param indexPath index path
+     * @return statistics
+     * @throws IOException if the file couldnot be read
+     */
+    public static IndexStatistics open(String indexPath) throws IOException {
+        return new IndexStatistics(map(getStatisticsPath(indexPath)));
+    }
+
+    /**
+     * Memory-maps a file in chunks of 1 GB, so it can be larger than a single mapping.
+     * @param file file to map
+     * @return mapped chunks of the file
+     * @throws IOException if the file couldnot be read
+     */
+    private static MappedByteBuffer[] map(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int numberOfChunks = (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+
+            MappedByteBuffer[] chunks = new MappedByteBuffer[numberOfChunks];
+            for (int i = 0; i < numberOfChunks; i++) {
+                long position = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_MASK + 1, size - position));
+            }
+            return chunks;
+        }
+    }
+
+
+    /**
+     * Memory-maps the statistics file of the given reader. The statistics are written by the
+     * indexer after its last commit, readers never write them.
+     * @param indexReader reader of the index
+     * @param indexPath index path
+     * @return statistics
+     * @throws IOException if the file couldnot be read or doesn't belong to the reader
+     */
+    public static IndexStatistics open(DirectoryReader indexReader, String indexPath) throws IOException {
+
+        if (!Files.exists(getStatisticsPath(indexPath))) {
+            throw new IOException("No statistics found in '" + indexPath + "', they are written once the indexer finishes.");
+        }
+
+        IndexStatistics statistics = open(indexPath);
+        if (!statistics.isCurrent(indexReader)) {
+            throw new IOException("The statistics in '" + indexPath + "' don't belong to the commit of the reader, "
+                    + "they are written once the indexer finishes.");
+        }
+        return statistics;
+    }
+
+    /**
+     * Memory-maps the statistics file if it matches the given reader, otherwise computes them
+     * from the reader and writes them first. Indexes created before the statistics file existed
+     * are upgraded this way.
+     * @param indexReader reader of the index
+     * @param indexPath index path
+     * @return statistics
+     * @throws IOException if the index or the file couldnot be read
+     */
+    public static IndexStatistics openOrWrite(DirectoryReader indexReader, String indexPath) throws IOException {
+
+        if (Files.exists(getStatisticsPath(indexPath))) {
+            try {
+                IndexStatistics statistics = open(indexPath);
+                if (statistics.isCurrent(indexReader)) {
+                    return statistics;
+                }
+            } catch (IOException e) {
+                // unreadable file, write it again
+            }
+        }
+
+        return write(indexReader, indexPath);
+    }
+
+    /**
+     * Checks if the statistics file belongs to the last commit of the index, from the
+     * header of the file only.
+     * @param directory directory of the index
+     * @param indexPath index path
+     * @return true if the statistics of the last commit are written
+     * @throws IOException if the index couldnot be read
+     */
+    public static boolean isWrittenForLastCommit(Directory directory, String indexPath) throws IOException {
+
+        Path file = getStatisticsPath(indexPath);
+        if (!Files.exists(file)) {
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            return false;
+        }
+
+        SegmentInfos lastCommit = SegmentInfos.readLatestCommit(directory);
+        return header.getLong(8) == lastCommit.getVersion() && header.getInt(16) == lastCommit.totalMaxDoc();
+    }
+
+    /**
+     * Computes the statistics of the committed index and writes them next to it.
+     * @param indexPath index path
+     * @throws IOException if the index couldnot be read or the file couldnot be written
+     */
+    public static void write(String indexPath) throws IOException {
+
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            write(indexReader, indexPath);
+        }
+    }
+
+    /**
+     * Computes the statistics of the given reader and writes them next to the index.
+     * The file is written to a temporary file first and moved in place, so readers
+     * never see a half written file. It is mapped before it is moved, so the returned
+     * statistics are the ones written here even if another process moves its own file
+     * in place right after.
+     * @param indexReader reader of the index
+     * @param indexPath index path
+     * @return statistics of the reader, mapped from the written file
+     * @throws IOException if the index couldnot be read or the file couldnot be written
+     */
+    public static IndexStatistics write(DirectoryReader indexReader, String indexPath) throws IOException {
+
+        int maxDoc = indexReader.maxDoc();
+        int numberOfdocs = indexReader.numDocs();
+
+        try (Section termOffsets = new Section(indexPath);
+             Section idfs = new Section(indexPath);
+             Section termBytes = new Section(indexPath)) {
+
+            // IDF table in index term order, the position of a term is its ordinal
+            int numTerms = 0;
+            long termBytesLength = 0;
+            Terms fieldTerms = MultiFields.getTerms(indexReader, LuceneConstants.FIELD_CONTENTS);
+            if (fieldTerms != null) {
+                TermsEnum iterator = fieldTerms.iterator();
+                BytesRef term;
+                while ((term = iterator.next()) != null) {
+                    termOffsets.output.writeLong(termBytesLength);
+                    idfs.output.writeDouble(Math.log10((double) numberOfdocs / (double) iterator.totalTermFreq()));
+                    termBytes.output.write(term.bytes, term.offset, term.length);
+                    termBytesLength += term.length;
+                    numTerms++;
+                }
+            }
+            termOffsets.output.writeLong(termBytesLength);
+
+            // the terms of the term vectors are looked up in the dictionary written so far
+            MappedByteBuffer[] termOffsetsChunks = termOffsets.map();
+            MappedByteBuffer[] termBytesChunks = termBytes.map();
+            MappedByteBuffer[] idfChunks = idfs.map();
+            TermOrdinals ordinals = new TermOrdinals(termOffsetsChunks, 0, termBytesChunks, 0, numTerms);
+
+            // document lengths and TF-IDF vector norms per docID
+            int[] documentLengths = new int[maxDoc];
+            double[] documentNorms = new double[maxDoc];
+            long sumTf = 0;
+            Bits liveDocs = MultiFields.getLiveDocs(indexReader);
+            for (int docId = 0; docId < maxDoc; docId++) {
+                if (liveDocs != null && !liveDocs.get(docId)) {
+                    continue;
+                }
+
+                Terms termVector = indexReader.getTermVector(docId, LuceneConstants.FIELD_CONTENTS);
+                if (termVector == null) {
+                    continue;
+                }
+
+                TermsEnum iterator = termVector.iterator();
+                BytesRef term;
+                int length = 0;
+                double sumOfSquares = 0.0;
+                while ((term = iterator.next()) != null) {
+                    long termFrequency = iterator.totalTermFreq();
+                    int ordinal = ordinals.get(term);
+                    double tfidf = ordinal < 0 ? 0.0 : (double) termFrequency * getDouble(idfChunks, 8L * ordinal);
+
+                    length += termFrequency;
+                    sumOfSquares += tfidf * tfidf;
+                }
+
+                documentLengths[docId] = length;
+                documentNorms[docId] = Math.sqrt(sumOfSquares);
+                sumTf += length;
+            }
+            double averageLength = numberOfdocs == 0 ? 0.0 : (double) sumTf / (double) numberOfdocs;
+
+            Path target = getStatisticsPath(indexPath);
+            // unique name, the indexer and a search server may write the statistics at the same time
+            Path temporary = Files.createTempFile(Paths.get(indexPath), LuceneConstants.STATISTICS_FILE, ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(indexReader.getVersion());
+                output.writeInt(maxDoc);
+                output.writeInt(numberOfdocs);
+                output.writeDouble(averageLength);
+                output.writeInt(numTerms);
+                output.writeInt(0);
+
+                for (int length : documentLengths) {
+                    output.writeInt(length);
+                }
+                pad(output, 4L * maxDoc);
+                for (double norm : documentNorms) {
+                    output.writeDouble(norm);
+                }
+
+                termOffsets.copyTo(output);
+                idfs.copyTo(output);
+                termBytes.copyTo(output);
+            }
+            IndexStatistics statistics = new IndexStatistics(map(temporary));
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return statistics;
+        }
+    }
+
+    /**
+     * Pads a section to the next multiple of 8 bytes.
+     * @param output statistics file
+     * @param length length of the section
+     * @throws IOException if the file couldnot be written
+     */
+    private static void pad(DataOutputStream output, long length) throws IOException {
+        output.write(new byte[(int) (align(length) - length)]);
+    }
+
+    /**
+     * Checks if the statistics were computed from the same commit as the reader
+     * @param indexReader reader of the index
+     * @return true if the statistics belong to the reader
+     */
+    public boolean isCurrent(DirectoryReader indexReader) {
+        return indexReader.getVersion() == indexVersion && indexReader.maxDoc() == maxDoc;
+    }
+
+    /**
+     * @return the number of live documents
+     */
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    /**
+     * @return the largest docID plus one
+     */
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    /**
+     * @return the average document length
+     */
+    public double getAverageLength() {
+        return averageLength;
+    }
+
+    /**
+     * Length (sum of the term frequencies) of the document
+     * @param docId document id
+     * @return document length
+     */
+    public int getDocumentLength(int docId) {
+        return getInt(chunks, lengthsOffset + 4L * docId);
+    }
+
+    /**
+     * Euclidean norm of the TF-IDF vector of the document
+     * @param docId document id
+     * @return document norm
+     */
+    public double getDocumentNorm(int docId) {
+        return getDouble(chunks, normsOffset + 8L * docId);
+    }
+
+    /**
+     * Inverse document frequency of the term, log10(numDocs/totalTermFreq)
+     * @param term term
+     * @return idf, or 0.0 if the term is not indexed
+     */
+    public double getInverseDocumentFrequency(String term) {
+        int ordinal = getTermOrdinal(new BytesRef(term));
+        if (ordinal < 0) {
+            return 0.0;
+        }
+
+        return getDouble(chunks, idfOffset + 8L * ordinal);
+    }
+
+    /**
+     * Checks if the term is indexed
+     * @param term term
+     * @return true if the term is in the dictionary
+     */
+    public boolean containsTerm(String term) {
+        return getTermOrdinal(new BytesRef(term)) >= 0;
+    }
+
+    /**
+     * Inverse document frequency of the term with the given ordinal
+     * @param ordinal ordinal of the term
+     * @return idf
+     */
+    public double getInverseDocumentFrequency(int ordinal) {
+        return getDouble(chunks, idfOffset + 8L * ordinal);
+    }
+
+    /**
+     * @return number of terms in the dictionary
+     */
+    public int getNumTerms() {
+        return numTerms;
+    }
+
+    /**
+     * Ordinal of the term in the dictionary, terms are numbered in index order
+     * @param term term
+     * @return ordinal of the term, or -1 if it is not found
+     */
+    public int getTermOrdinal(String term) {
+        return getTermOrdinal(new BytesRef(term));
+    }
+
+    /**
+     * Binary searches the term in the term bytes of the mapped file
+     * @param term term
+     * @return ordinal of the term, or -1 if it is not found
+     */
+    public int getTermOrdinal(BytesRef term) {
+        return findTerm(chunks, termOffsetsOffset, chunks, termBytesOffset, numTerms, term);
+    }
+
+    /**
+     * Hash table of the ordinals of the dictionary, for looking up every term of the term vectors
+     * without a binary search each.
+     * @return ordinals of the terms
+     */
+    TermOrdinals getTermOrdinals() {
+        return new TermOrdinals(chunks, termOffsetsOffset, chunks, termBytesOffset, numTerms);
+    }
+
+    /**
+     * Binary searches a term in mapped term offsets and term bytes.
+     * @param offsets chunks holding the term offsets
+     * @param offsetsStart position of the term offsets in their chunks
+     * @param bytes chunks holding the term bytes
+     * @param bytesStart position of the term bytes in their chunks
+     * @param numTerms number of terms
+     * @param term term
+     * @return ordinal of the term, or -1 if it is not found
+     */
+    private static int findTerm(MappedByteBuffer[] offsets, long offsetsStart, MappedByteBuffer[] bytes, long bytesStart,
+                                int numTerms, BytesRef term) {
+        int low = 0;
+        int high = numTerms - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long start = getLong(offsets, offsetsStart + 8L * middle);
+            long end = getLong(offsets, offsetsStart + 8L * (middle + 1));
+            int comparison = compareTerm(bytes, bytesStart + start, (int) (end - start), term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares a stored term with the given one in unsigned byte order, like the index does.
+     * @param bytes chunks holding the stored term
+     * @param position position of the stored term
+     * @param length length of the stored term
+     * @param term term
+     * @return negative, zero or positive if the stored term sorts before, equal or after
+     */
+    private static int compareTerm(MappedByteBuffer[] bytes, long position, int length, BytesRef term) {
+        int limit = Math.min(length, term.length);
+        for (int i = 0; i < limit; i++) {
+            int a = getByte(bytes, position + i) & 0xff;
+            int b = term.bytes[term.offset + i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+
+        return length - term.length;
+    }
+
+    private static byte getByte(MappedByteBuffer[] chunks, long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].get((int) (offset & CHUNK_MASK));
+    }
+
+    private static int getInt(MappedByteBuffer[] chunks, long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    private static long getLong(MappedByteBuffer[] chunks, long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    private static double getDouble(MappedByteBuffer[] chunks, long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getDouble((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Ordinals of the terms of a dictionary, in an open addressing table keyed by the hash of
+     * the term. The table keeps only the ordinals and hashes, a lookup compares the term with
+     * the mapped term bytes of the dictionary.
+     */
+    static final class TermOrdinals {
+
+        private final MappedByteBuffer[] offsets;
+        private final long offsetsStart;
+        private final MappedByteBuffer[] bytes;
+        private final long bytesStart;
+
+        // ordinal plus one, 0 marks an empty slot
+        private final int[] slots;
+        private final int[] hashes;
+
+        /**
+         * Hashes every term of a mapped dictionary.
+         * @param offsets chunks holding the term offsets
+         * @param offsetsStart position of the term offsets in their chunks
+         * @param bytes chunks holding the term bytes
+         * @param bytesStart position of the term bytes in their chunks
+         * @param numTerms number of terms
+         */
+        TermOrdinals(MappedByteBuffer[] offsets, long offsetsStart, MappedByteBuffer[] bytes, long bytesStart, int numTerms) {
+            this.offsets = offsets;
+            this.offsetsStart = offsetsStart;
+            this.bytes = bytes;
+            this.bytesStart = bytesStart;
+
+            // a load of 1/2 at most, so the probe sequences stay short
+            int capacity = 2;
+            while (capacity < 2L * numTerms) {
+                capacity <<= 1;
+            }
+            this.slots = new int[capacity];
+            this.hashes = new int[capacity];
+
+            BytesRef term = new BytesRef();
+            for (int ordinal = 0; ordinal < numTerms; ordinal++) {
+                long start = getLong(offsets, offsetsStart + 8L * ordinal);
+                int length = (int) (getLong(offsets, offsetsStart + 8L * (ordinal + 1)) - start);
+                term.bytes = ArrayUtil.grow(term.bytes, length);
+                for (int i = 0; i < length; i++) {
+                    term.bytes[i] = getByte(bytes, bytesStart + start + i);
+                }
+                term.length = length;
+
+                int hash = StringHelper.murmurhash3_x86_32(term, 0);
+                int slot = hash & (slots.length - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = ordinal + 1;
+                hashes[slot] = hash;
+            }
+        }
+
+        /**
+         * @param term term
+         * @return ordinal of the term, or -1 if it is not in the dictionary
+         */
+        int get(BytesRef term) {
+            int hash = StringHelper.murmurhash3_x86_32(term, 0);
+            for (int slot = hash & (slots.length - 1); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                int ordinal = slots[slot] - 1;
+                if (hashes[slot] == hash) {
+                    long start = getLong(offsets, offsetsStart + 8L * ordinal);
+                    long end = getLong(offsets, offsetsStart + 8L * (ordinal + 1));
+                    if (end - start == term.length && compareTerm(bytes, bytesStart + start, term.length, term) == 0) {
+                        return ordinal;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A section of the statistics file, streamed to a temporary file next to the index
+     * and copied into the statistics file once every section is written.
+     */
+    private static final class Section implements AutoCloseable {
+
+        private final Path file;
+        private final DataOutputStream output;
+
+        /**
+         * Initializes a new Section instance, writing to a temporary file next to the index.
+         * @param indexPath index path
+         * @throws IOException if the file couldnot be created
+         */
+        Section(String indexPath) throws IOException {
+            this.file = Files.createTempFile(Paths.get(indexPath), LuceneConstants.STATISTICS_FILE, ".section");
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        /**
+         * Maps what was written so far, to read it back while the other sections are written.
+         * @return mapped chunks of the section
+         * @throws IOException if the file couldnot be read
+         */
+        MappedByteBuffer[] map() throws IOException {
+            output.flush();
+            return IndexStatistics.map(file);
+        }
+
+        /**
+         * Appends the section to the statistics file, padded to the next section.
+         * @param statistics statistics file
+         * @throws IOException if the file couldnot be copied
+         */
+        void copyTo(DataOutputStream statistics) throws IOException {
+            output.close();
+            long length = Files.size(file);
+            Files.copy(file, statistics);
+            pad(statistics, length);
+        }
+
+        /**
+         * Removes the temporary file.
+         * @throws IOException if the file couldnot be removed
+         */
+        @Override
+        public void close() throws IOException {
+            output.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -10,4 +10,38 @@ public class LuceneConstants {
     public static String FIELD_TITLE = "title";
     public static String FIELD_HTML_TITLE = "htmlTitle";
     public static String FIELD_URL = "url";
+    public static String STATISTICS_FILE = "statistics.bin";
+    public static String FORWARD_INDEX_FILE = "forward.bin";
+    public static String CRAWL_LOG_FILE = "crawl.log";
+
+    // Crawler, override with -Dcrawl.threads=N (fetcher threads, the pages of a depth are fetched in parallel)
+    public static int CRAWL_THREADS = Integer.getInteger("crawl.threads", 16);
+    // Fetched pages waiting for the indexing thread
+    public static int CRAWL_QUEUE_SIZE = 256;
+    // Pages within this many bits of the SimHash of an indexed page are near-duplicates and aren't indexed,
+    // override with -Dcrawl.simhash.distance=N (0 to 3, -1 indexes every page)
+    public static int CRAWL_SIMHASH_DISTANCE = Integer.getInteger("crawl.simhash.distance", 3);
+    public static int CRAWL_SHINGLE_SIZE = 3;
+    // Politeness per host, override with -Dcrawl.host.connections=N (requests at a time),
+    // -Dcrawl.delay.ms=N (between requests, a longer Crawl-delay in robots.txt wins up to
+    // -Dcrawl.max.delay.ms=N) and -Dcrawl.robots=false
+    public static int CRAWL_HOST_CONNECTIONS = Integer.getInteger("crawl.host.connections", 1);
+    public static long CRAWL_DELAY_MS = Long.getLong("crawl.delay.ms", 1000L);
+    public static long CRAWL_MAX_DELAY_MS = Long.getLong("crawl.max.delay.ms", 30000L);
+    public static boolean CRAWL_ROBOTS = Boolean.parseBoolean(System.getProperty("crawl.robots", "true"));
+    // Commit the index and log the committed pages, to resume from, every N fetched pages, override with -Dcrawl.commit.interval=N
+    public static int CRAWL_COMMIT_INTERVAL = Integer.getInteger("crawl.commit.interval", 100);
+
+    // Page of ranked documents to print, override with -Dresults.count=N and -Dresults.offset=N
+    public static int RESULTS_COUNT = Integer.getInteger("results.count", 10);
+    public static int RESULTS_OFFSET = Integer.getInteger("results.offset", 0);
+
+    // Search server, override with -Dserver.port=N, -Dserver.threads=N and -Dserver.refresh.seconds=N
+    public static int SERVER_PORT = Integer.getInteger("server.port", 8080);
+    public static int SERVER_THREADS = Integer.getInteger("server.threads", Runtime.getRuntime().availableProcessors());
+    public static int SERVER_REFRESH_SECONDS = Integer.getInteger("server.refresh.seconds", 5);
+
+    // Largest page a search request may ask for, override with -Dserver.max.count=N and -Dserver.max.offset=N
+    public static int SERVER_MAX_COUNT = Integer.getInteger("server.max.count", 1000);
+    public static int SERVER_MAX_OFFSET = Integer.getInteger("server.max.offset", 10000);
 }
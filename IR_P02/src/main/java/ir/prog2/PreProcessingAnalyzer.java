@@ -0,0 +1,95 @@
+package ir.prog2;
+
+import org.apache.lucene.analysis.*;
+import org.apache.lucene.analysis.core.StopAnalyzer;
+import org.apache.lucene.analysis.en.PorterStemFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharTokenizer;
+
+/**
+ * Analyzer doing the same Data Pre-processing as DocumentPreProcessing.dataPreProcessing
+ * 1. splitting the text into words made of [a-zA-Z0-9_+] and lowercasing them
+ * 2. filter non-words (single chars and whole numbers)
+ * 3. remove stopwords and stemming each word using PorterStemmer
+ *
+ * The token streams are reused per thread by the Analyzer, so no tokenizer or filter
+ * chain is built per call.
+ */
+public class PreProcessingAnalyzer extends Analyzer {
+
+    /**
+     * Initializes a new PreProcessingAnalyzer instance.
+     */
+    public PreProcessingAnalyzer() {
+
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+
+        Tokenizer tokenizer = new WordTokenizer();
+        TokenStream tokenStream = new NonWordFilter(tokenizer);
+        tokenStream = new StopFilter(tokenStream, StopAnalyzer.ENGLISH_STOP_WORDS_SET);
+        tokenStream = new PorterStemFilter(tokenStream);
+
+        return new TokenStreamComponents(tokenizer, tokenStream);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new LowerCaseFilter(in);
+    }
+
+    /**
+     * Splits the text on every char that is not a word char and lowercases the words.
+     * Sentence delimiters are not word chars either, so sentences need no extra pass.
+     */
+    private static final class WordTokenizer extends CharTokenizer {
+
+        WordTokenizer() {
+            // don't split long words, like String.split doesn't
+            super(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, 1024 * 1024);
+        }
+
+        @Override
+        protected boolean isTokenChar(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '+';
+        }
+
+        @Override
+        protected int normalize(int c) {
+            return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+        }
+    }
+
+    /**
+     * Removes the words with a single char and the whole numbers.
+     */
+    private static final class NonWordFilter extends FilteringTokenFilter {
+
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+
+        NonWordFilter(TokenStream in) {
+            super(in);
+        }
+
+        @Override
+        protected boolean accept() {
+            int length = termAttribute.length();
+            if (length <= 1) {
+                return false;
+            }
+
+            char[] buffer = termAttribute.buffer();
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] < '0' || buffer[i] > '9') {
+                    return true;
+                }
+            }
+
+            // whole number
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ir.prog2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Allow and Disallow rules and the Crawl-delay of the "*" user-agent of a robots.txt.
+ *
+ * A path is matched by the longest rule, Allow wins a tie. Rules may use '*' for any
+ * characters and end with '$' to match the end of the path. Paths without a matching
+ * rule are allowed.
+ */
+public class RobotsRules {
+
+    /**
+     * Rules of a host without robots.txt.
+     */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new ArrayList<Rule>(), 0L);
+
+    private final List<Rule> rules;
+    private final long crawlDelayMillis;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMillis) {
+        this.rules = rules;
+        this.crawlDelayMillis = crawlDelayMillis;
+    }
+
+    /**
+     * Parses the groups of a robots.txt that apply to every user-agent ("*").
+     * @param robotsTxt contents of the robots.txt
+     * @return rules for the crawler
+     */
+    public static RobotsRules parse(String robotsTxt) {
+
+        List<Rule> rules = new ArrayList<>();
+        long crawlDelayMillis = 0L;
+
+        // user-agent lines in a row make a group, the rules after them belong to the group
+        boolean inAgents = false;
+        boolean applies = false;
+        for (String line : robotsTxt.split("\\r?\\n|\\r")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("user-agent")) {
+                if (!inAgents) {
+                    applies = false;
+                    inAgents = true;
+                }
+                applies |= value.equals("*");
+                continue;
+            }
+            inAgents = false;
+            if (!applies) {
+                continue;
+            }
+
+            if (key.equals("disallow") && !value.isEmpty()) {
+                rules.add(new Rule(value, false));
+            } else if (key.equals("allow") && !value.isEmpty()) {
+                rules.add(new Rule(value, true));
+            } else if (key.equals("crawl-delay")) {
+                try {
+                    crawlDelayMillis = Math.max(crawlDelayMillis, (long) (Double.parseDouble(value) * 1000));
+                } catch (NumberFormatException e) {
+                    // ignore the malformed delay
+                }
+            }
+        }
+        return new RobotsRules(rules, crawlDelayMillis);
+    }
+
+    /**
+     * @param path path of the url, with the query if it has one
+     * @return true if the path may be fetched
+     */
+    public boolean isAllowed(String path) {
+        if (path.isEmpty()) {
+            path = "/";
+        }
+
+        Rule longest = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (longest == null || rule.length > longest.length
+                    || (rule.length == longest.length && rule.allow))) {
+                longest = rule;
+            }
+        }
+        return longest == null || longest.allow;
+    }
+
+    /**
+     * @return Crawl-delay of the robots.txt in milliseconds, 0 if it has none
+     */
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /**
+     * An Allow or Disallow line.
+     */
+    private static final class Rule {
+
+        final Pattern pattern;
+        final int length;
+        final boolean allow;
+
+        Rule(String path, boolean allow) {
+            this.length = path.length();
+            this.allow = allow;
+
+            // the path is a prefix, '*' is any characters and a trailing '$' the end of the path
+            boolean anchored = path.endsWith("$");
+            if (anchored) {
+                path = path.substring(0, path.length() - 1);
+            }
+            StringBuilder regex = new StringBuilder();
+            String[] parts = path.split("\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                if (!parts[i].isEmpty()) {
+                    regex.append(Pattern.quote(parts[i]));
+                }
+            }
+            this.pattern = Pattern.compile(regex + (anchored ? "" : ".*"), Pattern.DOTALL);
+        }
+
+        boolean matches(String path) {
+            return pattern.matcher(path).matches();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ir.prog2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived search server.
+ *
+ * The index is opened once, and every searcher comes with the VSM model loaded for its reader,
+ * so a query only walks the postings of its terms. The index is checked for new commits
+ * periodically, for example after a new crawl, queries keep using the previous searcher until
+ * the new one is ready. The server never writes the statistics, a new commit is only picked up
+ * once the crawler wrote its statistics.
+ *
+ * Call: java -cp IR_P02.jar ir.prog2.SearchServer [path to index folder]
+ * Query: GET http://localhost:8080/search?q=[query]&offset=0&count=10
+ */
+public class SearchServer {
+
+    private final String indexPath;
+    private final Directory directory;
+    private final SearcherManager searcherManager;
+    private final ScheduledExecutorService refresher;
+    private HttpServer httpServer;
+    private ExecutorService queryExecutor;
+
+    /**
+     * Initializes a new SearchServer instance and opens the index.
+     * @param indexPath The index path where indexes are kept.
+     * @throws IOException if the index couldnot be opened
+     */
+    public SearchServer(String indexPath) throws IOException {
+        this.indexPath = indexPath;
+
+        this.directory = FSDirectory.open(Paths.get(indexPath));
+        if (!DirectoryReader.indexExists(directory)) {
+            throw new IOException("No index found in '" + indexPath + "'.");
+        }
+
+        this.searcherManager = new SearcherManager(directory, new RankingSearcherFactory());
+        this.refresher = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Starts answering queries on the given port of the loopback address.
+     * @param port port to listen on
+     * @throws IOException if the port couldnot be bound
+     */
+    public void start(int port) throws IOException {
+
+        // pick up new commits of the index once the indexer wrote their statistics
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (IndexStatistics.isWrittenForLastCommit(directory, indexPath)) {
+                        searcherManager.maybeRefresh();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, LuceneConstants.SERVER_REFRESH_SECONDS, LuceneConstants.SERVER_REFRESH_SECONDS, TimeUnit.SECONDS);
+
+        queryExecutor = Executors.newFixedThreadPool(LuceneConstants.SERVER_THREADS);
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/search", new SearchHandler());
+        httpServer.setExecutor(queryExecutor);
+        httpServer.start();
+    }
+
+    /**
+     * Stops the server and closes the index.
+     * @throws IOException if the index couldnot be closed
+     */
+    public void stop() throws IOException {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            queryExecutor.shutdown();
+        }
+        refresher.shutdown();
+        searcherManager.close();
+    }
+
+    /**
+     * Ranks the documents for the query and prints a page of them.
+     * @param userQuery query as typed by the user
+     * @param offset number of best documents to skip
+     * @param count number of documents to print
+     * @param out where to print the documents
+     * @throws IOException if the index couldnot be read
+     */
+    public void search(String userQuery, int offset, int count, PrintStream out) throws IOException {
+
+        HashMap<String, Integer> hashedQuery = Utils.analyzeQuery(userQuery);
+        TopKCollector collector = new TopKCollector(offset + count);
+
+        RankingSearcher searcher = (RankingSearcher) searcherManager.acquire();
+        try {
+            IndexReader indexReader = searcher.getIndexReader();
+
+            HashMap<Integer, Double> scores = searcher.vsm.calculateCosineScores(indexReader, hashedQuery);
+
+            for (Map.Entry<Integer, Double> document : scores.entrySet()) {
+                if (document.getValue() > 0.0) {
+                    collector.collect(document.getKey(), document.getValue());
+                }
+            }
+
+            Utils.printRankedDocuments(indexReader, collector, offset, out);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Driver Class
+     * Call: java -cp IR_P02.jar ir.prog2.SearchServer [path to index folder]
+     * @param args arguments
+     * @throws IOException if the index couldnot be opened or the port couldnot be bound
+     */
+    public static void main(String... args) throws IOException {
+
+        if (args.length != 1) {
+            System.out.println("java -cp IR_P02.jar ir.prog2.SearchServer [path to index folder]");
+            throw new IllegalArgumentException("Incorrect number of arguments provided (1 expected, " + args.length
+                    + " provided): " + Arrays.toString(args));
+        }
+
+        String indexPath = Preconditions.checkNotNull(args[0], "Index path should not be null");
+
+        final SearchServer server = new SearchServer(indexPath);
+        server.start(LuceneConstants.SERVER_PORT);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.stop();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+
+        System.out.println("Searching '" + indexPath + "' on http://localhost:" + LuceneConstants.SERVER_PORT
+                + "/search?q=[query]");
+    }
+
+    /**
+     * Searcher carrying the ranking model loaded for its reader.
+     */
+    private static final class RankingSearcher extends IndexSearcher {
+
+        private final VSM vsm;
+
+        RankingSearcher(IndexReader indexReader, VSM vsm) {
+            super(indexReader);
+            this.vsm = vsm;
+        }
+    }
+
+    /**
+     * Loads the model every time the SearcherManager opens a new reader.
+     */
+    private final class RankingSearcherFactory extends SearcherFactory {
+
+        @Override
+        public IndexSearcher newSearcher(IndexReader indexReader, IndexReader previousReader) throws IOException {
+
+            DirectoryReader directoryReader = (DirectoryReader) indexReader;
+
+            VSM vsm = VSM.loadStatistics(directoryReader, indexPath);
+
+            return new RankingSearcher(indexReader, vsm);
+        }
+    }
+
+    /**
+     * Answers GET /search?q=[query]&offset=[offset]&count=[count]
+     */
+    private final class SearchHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+            try {
+                Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+
+                String userQuery = parameters.get("q");
+                if (userQuery == null || userQuery.isEmpty()) {
+                    respond(exchange, 400, "Query should not be empty.\n");
+                    return;
+                }
+
+                int offset;
+                int count;
+                try {
+                    offset = parameters.containsKey("offset") ? Integer.parseInt(parameters.get("offset")) : 0;
+                    count = parameters.containsKey("count") ? Integer.parseInt(parameters.get("count")) : LuceneConstants.RESULTS_COUNT;
+                } catch (NumberFormatException e) {
+                    respond(exchange, 400, "Offset and count should be numbers.\n");
+                    return;
+                }
+                if (offset < 0 || count <= 0) {
+                    respond(exchange, 400, "Offset should not be negative and count should be positive.\n");
+                    return;
+                }
+                // the collector keeps offset + count documents, so the page is bounded
+                if (offset > LuceneConstants.SERVER_MAX_OFFSET || count > LuceneConstants.SERVER_MAX_COUNT) {
+                    respond(exchange, 400, "Offset should be at most " + LuceneConstants.SERVER_MAX_OFFSET
+                            + " and count at most " + LuceneConstants.SERVER_MAX_COUNT + ".\n");
+                    return;
+                }
+
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                PrintStream out = new PrintStream(buffer, false, "UTF-8");
+                search(userQuery, offset, count, out);
+                out.flush();
+
+                respond(exchange, 200, buffer.toString("UTF-8"));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                respond(exchange, 500, "Search failed: " + e.getMessage() + "\n");
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        }
+
+        private Map<String, String> parseParameters(String rawQuery) throws UnsupportedEncodingException {
+            Map<String, String> parameters = new HashMap<>();
+            if (rawQuery == null) {
+                return parameters;
+            }
+
+            for (String pair : rawQuery.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
+            }
+            return parameters;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ir.prog2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * SimHash of the contents of pages, to find near-duplicate pages like mirrors.
+ *
+ * The SimHash of a text is a 64-bit hash where bit i is set if the shingles (runs of
+ * consecutive words) with bit i set in their fingerprint outweigh the ones without it.
+ * Texts that share most of their shingles get hashes that differ in few bits.
+ *
+ * The added hashes are indexed by their four 16-bit blocks. Two hashes within 3 bits of
+ * each other are equal on at least one block, so only the hashes sharing a block with
+ * the new hash are compared.
+ */
+public class SimHash {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int BLOCKS = 4;
+    private static final int BLOCK_BITS = 64 / BLOCKS;
+
+    private final int maxDistance;
+    private final int shingleSize;
+    private final List<HashMap<Integer, List<Long>>> blocks = new ArrayList<>(BLOCKS);
+
+    /**
+     * Initializes a new SimHash instance.
+     * @param maxDistance pages within this many bits of an added page are near-duplicates, at most 3
+     * @param shingleSize number of words of a shingle
+     */
+    public SimHash(int maxDistance, int shingleSize) {
+        Preconditions.checkArgument(maxDistance >= 0 && maxDistance < BLOCKS,
+                "Distance should be between 0 and " + (BLOCKS - 1) + ": " + maxDistance);
+        Preconditions.checkArgument(shingleSize > 0, "Shingle size should be greater than 0.");
+
+        this.maxDistance = maxDistance;
+        this.shingleSize = shingleSize;
+        for (int i = 0; i < BLOCKS; i++) {
+            blocks.add(new HashMap<Integer, List<Long>>());
+        }
+    }
+
+    /**
+     * SimHash of the shingles of a text, each occurrence of a shingle weighs 1.
+     * @param text cleaned contents of a page
+     * @param shingleSize number of words of a shingle
+     * @return SimHash of the text, 0 if it has less words than a shingle
+     */
+    public static long hash(String text, int shingleSize) {
+        String[] words = WHITESPACE.split(text.trim());
+        if (words.length < shingleSize || words[0].isEmpty()) {
+            return 0L;
+        }
+
+        int[] weights = new int[64];
+        StringBuilder shingle = new StringBuilder();
+        for (int start = 0; start + shingleSize <= words.length; start++) {
+            shingle.setLength(0);
+            for (int i = start; i < start + shingleSize; i++) {
+                shingle.append(words[i]).append(' ');
+            }
+
+            long fingerprint = FingerprintSet.fingerprint(shingle);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((fingerprint >>> bit) & 1L) != 0 ? 1 : -1;
+            }
+        }
+
+        long hash = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                hash |= 1L << bit;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return number of bits the hashes differ in
+     */
+    public static int distance(long hash, long other) {
+        return Long.bitCount(hash ^ other);
+    }
+
+    /**
+     * @param text cleaned contents of a page
+     * @return SimHash of the shingles of the page
+     */
+    public long getHash(String text) {
+        return hash(text, shingleSize);
+    }
+
+    /**
+     * Adds the SimHash of a page, unless it is a near-duplicate of an added page.
+     * Pages with less words than a shingle are always added.
+     * @param text cleaned contents of the page
+     * @return true if the page isn't a near-duplicate of an added page
+     */
+    public boolean add(String text) {
+        return add(getHash(text));
+    }
+
+    /**
+     * Adds a SimHash, unless it is within the distance of an added one.
+     * @param hash SimHash of a page, 0 for a page with less words than a shingle
+     * @return true if the page isn't a near-duplicate of an added page
+     */
+    public synchronized boolean add(long hash) {
+        if (hash == 0L) {
+            return true;
+        }
+
+        for (int i = 0; i < BLOCKS; i++) {
+            List<Long> candidates = blocks.get(i).get(block(hash, i));
+            if (candidates == null) {
+                continue;
+            }
+            for (long candidate : candidates) {
+                if (distance(hash, candidate) <= maxDistance) {
+                    return false;
+                }
+            }
+        }
+
+        for (int i = 0; i < BLOCKS; i++) {
+            List<Long> hashes = blocks.get(i).get(block(hash, i));
+            if (hashes == null) {
+                hashes = new ArrayList<>(1);
+                blocks.get(i).put(block(hash, i), hashes);
+            }
+            hashes.add(hash);
+        }
+        return true;
+    }
+
+    private static int block(long hash, int i) {
+        return (int) (hash >>> (i * BLOCK_BITS)) & ((1 << BLOCK_BITS) - 1);
+    }
+}
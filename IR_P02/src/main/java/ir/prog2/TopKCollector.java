@@ -0,0 +1,177 @@
+package ir.prog2;
+
+/**
+ * Keeps the k best scored documents in a fixed size min-heap.
+ *
+ * The heap is two primitive arrays, so collecting a document never allocates and costs
+ * O(log k). The root is the worst of the kept documents, a new document only enters the
+ * heap when it beats the root. Equal scores are ranked by docId, the lower docId first,
+ * so the ranking doesn't depend on the order the documents are collected in.
+ */
+public class TopKCollector {
+
+    private final int[] docIds;
+    private final double[] scores;
+    private int size;
+    private long totalHits;
+    private boolean totalHitsExact = true;
+    private boolean sorted;
+
+    /**
+     * Initializes a new TopKCollector instance.
+     * @param k number of documents to keep
+     */
+    public TopKCollector(int k) {
+        Preconditions.checkArgument(k > 0, "k should be greater than 0.");
+
+        this.docIds = new int[k];
+        this.scores = new double[k];
+    }
+
+    /**
+     * Offers a document to the collector.
+     * @param docId id of the document
+     * @param score score of the document
+     */
+    public void collect(int docId, double score) {
+        Preconditions.checkState(!sorted, "Documents can't be collected after sorting.");
+
+        totalHits++;
+        if (size < docIds.length) {
+            docIds[size] = docId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isWorse(docIds[0], scores[0], docId, score)) {
+            docIds[0] = docId;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Sorts the kept documents best first, in place. No documents can be collected afterwards.
+     */
+    public void sort() {
+        if (sorted) {
+            return;
+        }
+
+        // Heap sort, moving the worst document to the end of the heap each time
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        sorted = true;
+    }
+
+    /**
+     * @return number of documents that were collected
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Marks the total hits as a lower bound, when documents were skipped without being collected.
+     */
+    public void setTotalHitsLowerBound() {
+        totalHitsExact = false;
+    }
+
+    /**
+     * @return true if every matching document was collected
+     */
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    /**
+     * Score a document has to beat to be kept. When documents are collected in increasing
+     * docID order, a later document loses the ties, so an equal score isn't enough.
+     * @return score of the worst kept document, or negative infinity while there is room left
+     */
+    public double getMinCompetitiveScore() {
+        return size < docIds.length ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * @return number of documents kept, at most k
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param rank rank of the document, starting at 0
+     * @return docId of the document with the given rank
+     */
+    public int getDocId(int rank) {
+        checkRank(rank);
+        return docIds[rank];
+    }
+
+    /**
+     * @param rank rank of the document, starting at 0
+     * @return score of the document with the given rank
+     */
+    public double getScore(int rank) {
+        checkRank(rank);
+        return scores[rank];
+    }
+
+    private void checkRank(int rank) {
+        Preconditions.checkState(sorted, "Documents should be sorted before reading them.");
+        Preconditions.checkArgument(rank >= 0 && rank < size, "Rank is out of range: " + rank);
+    }
+
+    /**
+     * @return true if the first document ranks below the second one
+     */
+    private static boolean isWorse(int docA, double scoreA, int docB, double scoreB) {
+        if (scoreA != scoreB) {
+            return scoreA < scoreB;
+        }
+        return docA > docB;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isWorse(docIds[index], scores[index], docIds[parent], scores[parent])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int end) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < end && isWorse(docIds[left], scores[left], docIds[worst], scores[worst])) {
+                worst = left;
+            }
+            if (right < end && isWorse(docIds[right], scores[right], docIds[worst], scores[worst])) {
+                worst = right;
+            }
+            if (worst == index) {
+                break;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int docId = docIds[i];
+        docIds[i] = docIds[j];
+        docIds[j] = docId;
+
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -1,16 +1,15 @@
 package ir.prog2;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.store.FSDirectory;
 import org.jsoup.Connection;
-import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -21,11 +20,23 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Indexes the given seeder url till the given depth
@@ -36,15 +47,19 @@ public class URLIndexer {
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
     private static final String RFERRRER = "http://www.google.com";
     private static final int TIME_OUT = 12 * 1000; // 12 seconds
-    private static int indexCount = 0;
+
+    // marks the end of the fetched pages for the indexing thread
+    private static final FetchedPage END_OF_PAGES = new FetchedPage(null, 0, null, null);
 
     // Related to URL and Depth
     private int maxDepth;
     private String url;
 
-    // Related to Fetching Animation
-    private static int counter = 1;
-    private static char[] animationChars = new char[]{'+', 'x'};
+    // Related to Fetching Animation, the documents are only counted by the indexing thread
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private int indexCount = 0;
+    private int duplicateCount = 0;
+    private static final char[] animationChars = new char[]{'+', 'x'};
 
     /**
      * Initializes a new URLIndexer instance.
@@ -66,7 +81,8 @@ public class URLIndexer {
 
         // Get the path for the indexing
         FSDirectory dir = FSDirectory.open(Paths.get(indexPath));
-        Analyzer analyzer = new StandardAnalyzer();
+        // same analysis chain as the queries
+        Analyzer analyzer = DocumentPreProcessing.getAnalyzer();
         IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
 
         iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
@@ -75,6 +91,22 @@ public class URLIndexer {
         return writer;
     }
 
+    /**
+     * Creates a GET request of the crawler.
+     *
+     * @param url url to request
+     * @return request following redirects, that throws on http errors unless told to ignore them
+     */
+    static Connection connect(String url) {
+        return Jsoup.connect(url)
+                .ignoreContentType(true)
+                .method(Connection.Method.GET)
+                .userAgent(USER_AGENT)
+                .referrer(RFERRRER)
+                .timeout(TIME_OUT)
+                .followRedirects(true);
+    }
+
     /**
      * Normalizes a malformed URL to a Standard format using Rules.
      * @param malformedUrl URL that needs to be normalized
@@ -101,10 +133,10 @@ public class URLIndexer {
             String scheme = url.getScheme().toLowerCase();
             String authority = url.getAuthority().toLowerCase();
 
-            // Remove the Port from the Authority
-            String port = String.valueOf(url.getPort());
-            if (authority.contains(port)) {
-                authority = authority.replaceAll(":" + port, "");
+            // Remove the default Port of the scheme from the Authority, other ports are kept
+            int port = url.getPort();
+            if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+                authority = authority.substring(0, authority.lastIndexOf(':'));
             }
 
             String path = url.getPath();
@@ -153,8 +185,21 @@ public class URLIndexer {
         folder.delete();
     }
 
+    /**
+     * Checks for a crawl that was interrupted, see CrawlLog.
+     *
+     * @param indexDir index directory
+     * @return true if the directory has an unfinished crawl of the seeder url and depth
+     * @throws IOException If there is a low-level I/O error
+     */
+    public boolean hasUnfinishedCrawl(String indexDir) throws IOException {
+        return CrawlLog.isResumable(Paths.get(indexDir, LuceneConstants.CRAWL_LOG_FILE), urlNormalization(url), maxDepth);
+    }
+
     /**
      * Crawls and Indexes all the crawled files in the director.
+     * An unfinished crawl of the same seeder url and depth in the directory is resumed,
+     * otherwise the directory is created again.
      *
      * @param indexDir index directory where the indexing needs to be done
      * @throws IOException If there is a low-level I/O error
@@ -165,11 +210,15 @@ public class URLIndexer {
             indexDir = indexDir.substring(0, indexDir.lastIndexOf("/"));
         }
 
-        if ( new File(indexDir).exists() ) {
+        // Crawl from the seeder URL at depth = 0, normalized like the links
+        String normalizedURL = urlNormalization(this.url);
+        Path logFile = Paths.get(indexDir, LuceneConstants.CRAWL_LOG_FILE);
+
+        if ( !hasUnfinishedCrawl(indexDir) && new File(indexDir).exists() ) {
             deleteFolder(new File(indexDir));
         }
 
-        // Creating new Index Directory
+        // Creating new Index Directory, or opening the last commit of the interrupted crawl
         IndexWriter indexWriter = createWriter(indexDir);
 
         // Adding files to the pages.txt
@@ -186,150 +235,308 @@ public class URLIndexer {
 
         FileWriter fileWriter = null;
         BufferedWriter bufferedWriter = null;
+        CrawlLog crawlLog = null;
 
         try {
             fileWriter = new FileWriter(fileName, true);
             bufferedWriter = new BufferedWriter(fileWriter);
+            crawlLog = new CrawlLog(logFile, normalizedURL, maxDepth);
 
-            // Adding the seeder URL depth = 0 and Make it Normalized
-            String normalizedURL = urlNormalization(this.url);
-            Document document = Jsoup.connect(normalizedURL)
-                    .ignoreContentType(true)
-                    .method(Connection.Method.GET)
-                    .userAgent(USER_AGENT)
-                    .referrer(RFERRRER)
-                    .timeout(TIME_OUT)
-                    .followRedirects(true)
-                    .ignoreHttpErrors(true).get();
-            String htmlFile = document.html();
-            indexDocument(0, htmlFile, normalizedURL, indexWriter);
-            // System.out.println("Indexed " + "link: " + normalizedURL + ", docId: " + indexCount);
-            bufferedWriter.write(normalizedURL + "\t" + 0 + "\n");
-            indexCount++;
-
-            List<String> visitedUrls = new ArrayList<>();
-            dfsLinksTraversal(normalizedURL, bufferedWriter, indexWriter, visitedUrls, 1);
-
-            // System.out.println(visitedUrls.size());
-        } catch (IOException e) {
-            // ignore
+            bfsLinksTraversal(crawlLog, bufferedWriter, indexWriter);
+
+            indexWriter.commit();
+            indexWriter.close();
 
+            // Precompute the statistics used by the ranker for the committed index
+            IndexStatistics.write(indexDir);
+            crawlLog.finish();
+
+        } catch (IOException | Error e) {
+            indexWriter.rollback();
+            throw e;
         } finally {
             try {
                 if (bufferedWriter != null)
                     bufferedWriter.close();
                 if (fileWriter != null)
                     fileWriter.close();
+                if (crawlLog != null)
+                    crawlLog.close();
 
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
         }
 
-        indexWriter.commit();
-        indexWriter.close();
-
         System.out.println("\nIndexing Completed");
     }
 
     /**
-     * Recursively traverses all the found link with crawling depth condition
+     * Crawls breadth first from the frontier of the crawl log, the seeder url for a new crawl.
+     * The pages of a depth are fetched by a pool of fetcher threads, politely per host (see HostScheduler),
+     * their links that weren't seen before make the frontier of the next depth.
+     * Fetched pages are handed to a single indexing thread, which adds them to the index and to pages.txt,
+     * unless they are near-duplicates of an indexed page. The index is committed every
+     * CRAWL_COMMIT_INTERVAL pages and after every depth, the committed pages are logged right after,
+     * so a resumed crawl doesn't fetch them again.
      *
-     * @param url current url
+     * @param crawlLog log of the crawl
      * @param bufferedWriter writer for writing in the file
      * @param indexWriter writer for writing the index
-     * @param visited list of urls that are visited
-     * @param count depth of the recursion
+     * @throws IOException If there is a low-level I/O error
      */
-    private void dfsLinksTraversal(String url, BufferedWriter bufferedWriter,
-                                   IndexWriter indexWriter, List<String> visited,
-                                   int count) {
-        // mark current node as visited.
-        visited.add(url);
-        // System.out.println("Visited Node: " + url);
-
-        // if recursion depth is reached then return
-        if (count > maxDepth ) {
-            return;
+    private void bfsLinksTraversal(final CrawlLog crawlLog, final BufferedWriter bufferedWriter,
+                                   final IndexWriter indexWriter) throws IOException {
+
+        final BlockingQueue<FetchedPage> fetchedPages = new ArrayBlockingQueue<>(LuceneConstants.CRAWL_QUEUE_SIZE);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final SimHash indexedPages = LuceneConstants.CRAWL_SIMHASH_DISTANCE < 0 ? null
+                : new SimHash(LuceneConstants.CRAWL_SIMHASH_DISTANCE, LuceneConstants.CRAWL_SHINGLE_SIZE);
+
+        // pages committed before the crawl was interrupted
+        indexCount = crawlLog.getIndexedCount();
+        if (indexedPages != null) {
+            for (long simHash : crawlLog.getSimHashes()) {
+                indexedPages.add(simHash);
+            }
         }
 
-        try {
-            // ignoreHttpErrors:
-            // In case a url throws response code 404, skip that url
-            Document document = Jsoup.connect(url)
-                    .ignoreContentType(true)
-                    .method(Connection.Method.GET)
-                    .userAgent(USER_AGENT)
-                    .referrer(RFERRRER)
-                    .timeout(TIME_OUT)
-                    .followRedirects(true)
-                    .ignoreHttpErrors(true).get();
-
-            Elements elements = document.select("a");
-            for (Element element : elements) {
-                counter++;
-                StringBuilder string = new StringBuilder();
-                string
-                        .append('\r')
-                        .append(String.format("Fetching %c |", animationChars[counter % 2]))
-                        .append(String.format(" Documents Fetched: %3d |", counter))
-                        .append(String.format(" Documents Indexed: %3d ", indexCount));
-                System.out.print(string);
-
-                String link = element.absUrl("href");
-                boolean validLink = Jsoup.isValid(link, Whitelist.basic());
-
-                // Rule 1: Ignore the links that have empty
-                if (link.equalsIgnoreCase("")) {
-                    continue;
+        ExecutorService indexer = Executors.newSingleThreadExecutor();
+        indexer.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<FetchedPage> uncommitted = new ArrayList<>();
+                try {
+                    FetchedPage page;
+                    while ((page = fetchedPages.take()) != END_OF_PAGES) {
+                        // keep draining after a failure, so the fetchers never block
+                        if (failure.get() != null) {
+                            if (page.committed != null) {
+                                page.committed.countDown();
+                            }
+                            continue;
+                        }
+
+                        try {
+                            if (page.committed != null) {
+                                commitPages(uncommitted, crawlLog, bufferedWriter, indexWriter);
+                                page.committed.countDown();
+                                continue;
+                            }
+
+                            // near-duplicates of an indexed page (mirrors, ...) aren't indexed again
+                            page.simHash = indexedPages == null ? 0L : indexedPages.getHash(page.page.getContents());
+                            page.indexed = indexedPages == null || indexedPages.add(page.simHash);
+                            if (page.indexed) {
+                                indexDocument(indexCount, page.page, page.url, indexWriter);
+                                indexCount++;
+                            } else {
+                                duplicateCount++;
+                            }
+                            printProgress();
+
+                            uncommitted.add(page);
+                            if (uncommitted.size() >= LuceneConstants.CRAWL_COMMIT_INTERVAL) {
+                                commitPages(uncommitted, crawlLog, bufferedWriter, indexWriter);
+                            }
+                        } catch (Throwable t) {
+                            // Errors too, the thread has to go on draining and counting the commits down
+                            failure.compareAndSet(null, t);
+                            if (page.committed != null) {
+                                page.committed.countDown();
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+            }
+        });
 
-                // Rule 2: Check if the link tag <a></a> is valid
-                if (validLink == false) {
-                    continue;
-                }
+        ScheduledExecutorService fetchers = Executors.newScheduledThreadPool(LuceneConstants.CRAWL_THREADS);
+        HostScheduler scheduler = new HostScheduler(LuceneConstants.CRAWL_HOST_CONNECTIONS,
+                LuceneConstants.CRAWL_DELAY_MS, LuceneConstants.CRAWL_MAX_DELAY_MS, LuceneConstants.CRAWL_ROBOTS);
+        FingerprintSet visited = crawlLog.getVisited();
+        List<String> frontier = crawlLog.getFrontier();
+
+        try {
+            for (int depth = crawlLog.getDepth(); depth <= maxDepth && !frontier.isEmpty() && failure.get() == null; depth++) {
 
-                // Rule 3: Ignore the links that doesn't start with "http" or "https". ex: mailto
-                if ( !(link.startsWith("http") || link.startsWith("https")) ) {
-                    continue;
+                // pages logged before the crawl was interrupted aren't fetched again
+                List<String> unfetched = new ArrayList<>();
+                for (String pageUrl : frontier) {
+                    if (crawlLog.getFetched(pageUrl) == null) {
+                        unfetched.add(pageUrl);
+                    }
                 }
 
-                // Make the link Normalized
-                String normalizedLink = urlNormalization(link);
-
-                // System.out.println("link: " + link + ", valid: " + validLink + ", depth: " + count);
-                if ( !visited.contains(normalizedLink) ) {
-
-                    try {
-                        String htmlFile = Jsoup.connect(normalizedLink)
-                                .ignoreContentType(true)
-                                .method(Connection.Method.GET)
-                                .userAgent(USER_AGENT)
-                                .referrer(RFERRRER)
-                                .timeout(TIME_OUT)
-                                .followRedirects(true).get().html();
-                        // .ignoreHttpErrors(true).get().html();
-
-                        indexDocument(indexCount, htmlFile, normalizedLink, indexWriter);
-                        // System.out.println("Indexed " + "link: " + link + ", docId: " + indexCount);
-                        bufferedWriter.write(normalizedLink + "\t" + count + "\n");
-                        indexCount++;
-
-                    } catch (HttpStatusException he) {
-                        // 404 error is caught ! and we won't index it.
-                        // System.out.println("Not Indexed " + "link: " + link + ", docId: " + indexCount);
+                final int frontierDepth = depth;
+                List<List<String>> fetchedLinks = scheduler.fetchAll(unfetched, fetchers,
+                        new HostScheduler.Fetcher<List<String>>() {
+                            @Override
+                            public List<String> fetch(String pageUrl) throws InterruptedException {
+                                return fetchPage(pageUrl, frontierDepth, fetchedPages);
+                            }
+                        });
+
+                // every page of the depth is committed and logged before the next depth is
+                FetchedPage commit = new FetchedPage(new CountDownLatch(1));
+                fetchedPages.put(commit);
+                commit.committed.await();
+
+                // links in the order of the frontier, so the crawled pages don't depend on the timing
+                List<String> nextFrontier = new ArrayList<>();
+                int next = 0;
+                for (String pageUrl : frontier) {
+                    CrawlLog.FetchedRecord record = crawlLog.getFetched(pageUrl);
+                    List<String> pageLinks = record != null ? record.getLinks() : fetchedLinks.get(next++);
+                    // disallowed by robots.txt
+                    if (pageLinks == null) {
+                        continue;
+                    }
+                    for (String link : pageLinks) {
+                        if (visited.add(link)) {
+                            nextFrontier.add(link);
+                        }
                     }
-                    dfsLinksTraversal(normalizedLink, bufferedWriter, indexWriter, visited, count + 1);
                 }
+                frontier = nextFrontier;
+
+                if (!frontier.isEmpty() && failure.get() == null) {
+                    crawlLog.startDepth(depth + 1, frontier);
+                }
+            }
+
+            fetchers.shutdown();
+            fetchedPages.put(END_OF_PAGES);
+            indexer.shutdown();
+            indexer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            fetchers.shutdownNow();
+            indexer.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Crawling was interrupted.");
+        } catch (ExecutionException e) {
+            fetchers.shutdownNow();
+            indexer.shutdownNow();
+            throw new IOException(e.getCause());
+        }
+
+        if (failure.get() != null) {
+            Throwable t = failure.get();
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw t instanceof IOException ? (IOException) t : new IOException(t);
+        }
+    }
+
+    /**
+     * Commits the index, then writes the committed pages to pages.txt and to the crawl log.
+     *
+     * @param uncommitted pages added since the last commit, cleared
+     * @param crawlLog log of the crawl
+     * @param bufferedWriter writer for writing in the file
+     * @param indexWriter writer for writing the index
+     * @throws IOException If there is a low-level I/O error
+     */
+    private void commitPages(List<FetchedPage> uncommitted, CrawlLog crawlLog,
+                             BufferedWriter bufferedWriter, IndexWriter indexWriter) throws IOException {
+        if (uncommitted.isEmpty()) {
+            return;
+        }
+
+        indexWriter.commit();
+        for (FetchedPage page : uncommitted) {
+            if (page.indexed) {
+                bufferedWriter.write(page.url + "\t" + page.depth + "\n");
             }
+            crawlLog.fetched(page.url, page.indexed, page.simHash, page.links);
+        }
+        bufferedWriter.flush();
+        crawlLog.flush();
+        uncommitted.clear();
+    }
+
+    /**
+     * Fetches a page, hands its title and contents to the indexing thread and extracts its links.
+     * Pages that can't be fetched (404, timeout, ...) are skipped.
+     *
+     * @param pageUrl normalized url of the page
+     * @param depth depth of the page
+     * @param fetchedPages queue of the indexing thread
+     * @return normalized links of the page, none at the maximum depth
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    private List<String> fetchPage(String pageUrl, int depth, BlockingQueue<FetchedPage> fetchedPages)
+            throws InterruptedException {
+
+        Document document;
+        try {
+            // In case a url throws response code 404, skip that url
+            document = connect(pageUrl).get();
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+
+        // the fetched document is parsed once, for the index and for the links
+        List<String> links = depth >= maxDepth ? Collections.<String>emptyList() : extractLinks(document);
+
+        fetchCount.incrementAndGet();
+        fetchedPages.put(new FetchedPage(pageUrl, depth, HTMLParser.parse(document), links));
+        return links;
+    }
+
+    /**
+     * Extracts the normalized http(s) links of a page.
+     *
+     * @param document fetched page
+     * @return normalized links, in the order of the page
+     */
+    private List<String> extractLinks(Document document) {
 
-        } catch (SocketTimeoutException ste) {
+        List<String> links = new ArrayList<>();
+        Elements elements = document.select("a");
+        for (Element element : elements) {
+            String link = element.absUrl("href");
 
-        } catch (HttpStatusException he) {
+            // Rule 1: Ignore the links that have empty
+            if (link.equalsIgnoreCase("")) {
+                continue;
+            }
 
-        } catch (IOException ioe) {
+            // Rule 2: Check if the link tag <a></a> is valid
+            if (!Jsoup.isValid(link, Whitelist.basic())) {
+                continue;
+            }
 
+            // Rule 3: Ignore the links that doesn't start with "http" or "https". ex: mailto
+            if ( !(link.startsWith("http") || link.startsWith("https")) ) {
+                continue;
+            }
+
+            // Make the link Normalized
+            try {
+                links.add(urlNormalization(link));
+            } catch (MalformedURLException e) {
+                // skip the link
+            }
         }
+        return links;
+    }
+
+    /**
+     * Prints the fetched and indexed documents on the current line
+     */
+    private void printProgress() {
+        StringBuilder string = new StringBuilder();
+        string
+                .append('\r')
+                .append(String.format("Fetching %c |", animationChars[indexCount % 2]))
+                .append(String.format(" Documents Fetched: %3d |", fetchCount.get()))
+                .append(String.format(" Documents Indexed: %3d |", indexCount))
+                .append(String.format(" Duplicates: %3d ", duplicateCount));
+        System.out.print(string);
     }
 
     /**
@@ -342,44 +549,87 @@ public class URLIndexer {
      * @throws IOException If there is a low-level I/O error
      */
     public void indexDocument(long counter, String htmlFile, String url, IndexWriter writer) throws IOException {
+        // parse once for the title and the contents
+        indexDocument(counter, HTMLParser.parse(htmlFile), url, writer);
+    }
 
-        String htmlTitle = HTMLParser.getTitle(htmlFile);
-        String htmlBody = HTMLParser.getCleanedContents(htmlFile);
+    /**
+     * Indexes an already parsed page
+     *
+     * @param counter document id
+     * @param page title and cleaned contents of the page
+     * @param url url
+     * @param writer index writer
+     * @throws IOException If there is a low-level I/O error
+     */
+    public void indexDocument(long counter, ParsedPage page, String url, IndexWriter writer) throws IOException {
+
+        String htmlTitle = page.getTitle();
+        String htmlBody = page.getContents();
 
         String id    = String.valueOf(counter);
-        String title = DocumentPreProcessing.dataPreProcessing(htmlTitle);
-        String body  = DocumentPreProcessing.dataPreProcessing(htmlBody);
 
-        // Make it a Lucene document
-        org.apache.lucene.document.Document document = createDocument(id, title, htmlTitle, body, url);
+        // Make it a Lucene document, the writer's analyzer does the pre-processing
+        org.apache.lucene.document.Document document = createDocument(id, htmlTitle, htmlBody, url);
 
         // System.out.println("Adding: " + url);
-        writer.addDocument(document);
+        // replaces the document of a page that was fetched again after an interrupted crawl
+        writer.updateDocument(new Term(LuceneConstants.FIELD_URL, url), document);
     }
 
     /**
      * Create the Document for indexing.
      *
      * @param id id of the document
-     * @param title Title of the document
      * @param htmlTitle HTML Title of the document
      * @param body Body of the document
      * @param url URL of the document
      */
-    private org.apache.lucene.document.Document createDocument(String id, String title,
-                               String htmlTitle, String body,
-                               String url) {
+    private org.apache.lucene.document.Document createDocument(String id, String htmlTitle,
+                               String body, String url) {
 
         FieldType fieldType = new FieldType(TextField.TYPE_STORED);
         fieldType.setStoreTermVectors(true);
 
         org.apache.lucene.document.Document document = new org.apache.lucene.document.Document();
         document.add(new StringField(LuceneConstants.FIELD_ID, id, Field.Store.YES));
-        document.add(new StringField(LuceneConstants.FIELD_TITLE, title, Field.Store.YES));
+        document.add(new TextField(LuceneConstants.FIELD_TITLE, htmlTitle, Field.Store.YES));
         document.add(new StringField(LuceneConstants.FIELD_HTML_TITLE, htmlTitle, Field.Store.YES));
         document.add(new Field(LuceneConstants.FIELD_CONTENTS, body, fieldType));
         document.add(new StringField(LuceneConstants.FIELD_URL, url, Field.Store.YES));
 
         return document;
     }
+
+    /**
+     * Page fetched for the indexing thread, or a request to commit the pages before it.
+     */
+    private static final class FetchedPage {
+
+        final String url;
+        final int depth;
+        final ParsedPage page;
+        final List<String> links;
+        final CountDownLatch committed;
+
+        // set by the indexing thread
+        long simHash;
+        boolean indexed;
+
+        FetchedPage(String url, int depth, ParsedPage page, List<String> links) {
+            this.url = url;
+            this.depth = depth;
+            this.page = page;
+            this.links = links;
+            this.committed = null;
+        }
+
+        FetchedPage(CountDownLatch committed) {
+            this.url = null;
+            this.depth = 0;
+            this.page = null;
+            this.links = null;
+            this.committed = committed;
+        }
+    }
 }
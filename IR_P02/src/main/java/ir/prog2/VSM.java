@@ -1,10 +1,9 @@
 package ir.prog2;
 
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Bits;
 
 import java.io.IOException;
 import java.nio.file.Paths;
@@ -12,69 +11,55 @@ import java.util.*;
 
 /**
  * VSM model for ranked retrieval.
+ *
+ * A model is an immutable snapshot of one commit of the index, it can be shared by any
+ * number of query threads.
  */
 public class VSM {
-    String indexPath = "";
-    HashMap<String, HashMap<String, Integer>> documentTFMappings;
-    HashMap<String, Double> invertedDictionary;
+    final ForwardIndex forwardIndex;
+    final IndexStatistics statistics;
 
     /**
      * Initializes a new VSM instance.
-     * @param indexPath index path
+     * @param statistics precomputed statistics of the index
+     * @param forwardIndex term frequencies per document, or null when only scoring postings
      */
-    public VSM(String indexPath) {
+    private VSM(IndexStatistics statistics, ForwardIndex forwardIndex) {
 
-        this.indexPath = indexPath;
-        this.documentTFMappings = new HashMap<>();
-        this.invertedDictionary = new HashMap<>();
+        this.statistics = statistics;
+        this.forwardIndex = forwardIndex;
+    }
+
+    /**
+     * Memory-maps the precomputed statistics of the index (IDF and TF-IDF document norms)
+     * and makes a model scoring the postings of the given reader.
+     * The statistics are written by the indexer, they have to belong to the given reader.
+     * @param indexReader reader of the index
+     * @param indexPath index path
+     * @return model for the reader
+     * @throws IOException if the index or the statistics couldnot be read
+     */
+    public static VSM loadStatistics(DirectoryReader indexReader, String indexPath) throws IOException {
+        return new VSM(IndexStatistics.open(indexReader, indexPath), null);
     }
 
     /**
      * Calculates the IDF and TF for the documents indexed
      * @param indexPath indexing path
+     * @return model holding the term frequencies of every document
      * @throws IOException if path value couldnot be read
      */
-    public void calculateIDFandTF(String indexPath) throws IOException {
-        Directory directory = FSDirectory.open(Paths.get(indexPath));
-        IndexReader indexReader = DirectoryReader.open(directory);
+    public static VSM calculateIDFandTF(String indexPath) throws IOException {
 
-        int numberOfdocs = indexReader.numDocs();
-        for (int docId = 0; docId < numberOfdocs; docId++) {
+        try (DirectoryReader indexReader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
 
-            Terms termVector = indexReader.getTermVector(docId, LuceneConstants.FIELD_CONTENTS);
-            if (termVector == null) {
-                // System.out.println("No Term Vector Found");
-                continue;
-            }
-            Document document = indexReader.document(docId);
-            String documentContent = new String(document.get(LuceneConstants.FIELD_CONTENTS));
-            String documentID = new String(document.get(LuceneConstants.FIELD_ID));
-            // System.out.println("Doc:: " + documentID + ", Content: " + documentContent);
-
-            TermsEnum iterator = termVector.iterator();
-            BytesRef term = null;
-            List<String> terms = new ArrayList<>();
-            while ((term = iterator.next()) != null) {
-
-                try {
-                    String termText = term.utf8ToString();
-                    Term termInstance = new Term(LuceneConstants.FIELD_CONTENTS, term);
-                    long termFrequency = indexReader.totalTermFreq(termInstance);
-                    long documentCount = indexReader.docFreq(termInstance);
-                    terms.add(termText);
-
-                    Double idf = Math.log10((double)numberOfdocs/(double)termFrequency);
-                    if(!invertedDictionary.containsKey(term)) {
-                        invertedDictionary.put(termText, idf);
-                    }
+            // IDF and the document norms come from the precomputed statistics, computed now if missing
+            IndexStatistics statistics = IndexStatistics.openOrWrite(indexReader, indexPath);
 
-                    // System.out.println("doc:" + docId + ", term: " + termText + ", termFreq = " + termFrequency + ", docCount = " + documentCount);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            HashMap<String, Integer> termFrequency = Utils.getTermFrequencyOfEachWord(documentContent.trim(), terms);
-            this.documentTFMappings.put(documentID, termFrequency);
+            // frequencies are read in place from the memory-mapped forward index
+            ForwardIndex forwardIndex = ForwardIndex.open(indexReader, statistics, indexPath);
+
+            return new VSM(statistics, forwardIndex);
         }
     }
 
@@ -121,14 +106,20 @@ public class VSM {
      * @return score
      */
     public double cosineSimilarity(HashMap<String, Double> v1, HashMap<String, Double> v2) {
+        // align both vectors on the same keys, terms missing in one vector are 0.0
         List<Double> lv1 = new ArrayList<>();
+        List<Double> lv2 = new ArrayList<>();
         for(Map.Entry<String, Double> entry : v1.entrySet()) {
+            Double value = v2.get(entry.getKey());
             lv1.add(entry.getValue());
+            lv2.add(value == null ? 0.0 : value);
         }
 
-        List<Double> lv2 = new ArrayList<>();
         for(Map.Entry<String, Double> entry : v2.entrySet()) {
-            lv2.add(entry.getValue());
+            if (!v1.containsKey(entry.getKey())) {
+                lv1.add(0.0);
+                lv2.add(entry.getValue());
+            }
         }
 
         double dotProduct = this.getDotProduct(lv1, lv2);
@@ -137,13 +128,101 @@ public class VSM {
         return dotProduct/normalize;
     }
 
+    /**
+     * Calculates the cosine score for the query and a document of the forward index.
+     * @param docId id of the document
+     * @param query query
+     * @return score
+     */
+    public double cosineSimilarity(int docId, Map<String, Integer> query) {
+
+        Preconditions.checkState(this.forwardIndex != null, "Term frequencies are only loaded by calculateIDFandTF.");
+
+        double dotProduct = 0.0;
+        double sumOfSquares = 0.0;
+        for (Map.Entry<String, Integer> entry : query.entrySet()) {
+            int ordinal = this.statistics.getTermOrdinal(entry.getKey());
+            if (ordinal < 0) {
+                continue;
+            }
+
+            double idf = this.statistics.getInverseDocumentFrequency(ordinal);
+            double queryWeight = (double) entry.getValue() * idf;
+            dotProduct += (double) this.forwardIndex.getTermFrequency(docId, ordinal) * idf * queryWeight;
+            sumOfSquares += queryWeight * queryWeight;
+        }
+
+        return dotProduct / (this.statistics.getDocumentNorm(docId) * Math.sqrt(sumOfSquares));
+    }
+
+    /**
+     * Calculates the cosine score of the query for every document containing a query term.
+     * The dot product is accumulated per docID over the postings of the query terms only
+     * and divided by the document norm cached at index time and the query norm, so the
+     * cost grows with the number of matched postings.
+     * @param indexReader index reader
+     * @param query query
+     * @return mapping of docID and score for the documents containing any query term
+     * @throws IOException if the index couldnot be read
+     */
+    public HashMap<Integer, Double> calculateCosineScores(IndexReader indexReader, HashMap<String, Integer> query) throws IOException {
+
+        // TF-IDF weights and norm of the query vector
+        HashMap<String, Double> queryWeights = new HashMap<>();
+        double sumOfSquares = 0.0;
+        for (Map.Entry<String, Integer> entry : query.entrySet()) {
+            double weight = (double) entry.getValue() * this.statistics.getInverseDocumentFrequency(entry.getKey());
+            if (weight != 0.0) {
+                queryWeights.put(entry.getKey(), weight);
+                sumOfSquares += weight * weight;
+            }
+        }
+        double queryNorm = Math.sqrt(sumOfSquares);
+
+        HashMap<Integer, Double> accumulators = new HashMap<>();
+        for (Map.Entry<String, Double> entry : queryWeights.entrySet()) {
+
+            double idf = this.statistics.getInverseDocumentFrequency(entry.getKey());
+            double queryWeight = entry.getValue();
+
+            Term termInstance = new Term(LuceneConstants.FIELD_CONTENTS, entry.getKey());
+            for (LeafReaderContext leaf : indexReader.leaves()) {
+                PostingsEnum postings = leaf.reader().postings(termInstance, PostingsEnum.FREQS);
+                if (postings == null) {
+                    continue;
+                }
+
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                int doc;
+                while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+
+                    int docId = leaf.docBase + doc;
+                    double product = (double) postings.freq() * idf * queryWeight;
+                    Double accumulated = accumulators.get(docId);
+                    accumulators.put(docId, accumulated == null ? product : accumulated + product);
+                }
+            }
+        }
+
+        // normalize the dot products with the cached document norms
+        for (Map.Entry<Integer, Double> entry : accumulators.entrySet()) {
+            double documentNorm = this.statistics.getDocumentNorm(entry.getKey());
+            entry.setValue(entry.getValue() / (documentNorm * queryNorm));
+        }
+
+        return accumulators;
+    }
+
     /**
      * Flattens the query and document lists and get all the unique keys
      * @param document document
      * @param query query
      * @return set of keys
      */
-    public Set getFlattenTerms(HashMap<String, Integer> document, HashMap<String, Integer> query) {
+    public Set getFlattenTerms(Map<String, Integer> document, Map<String, Integer> query) {
         Set words = new HashSet();
 
         for (Map.Entry<String, Integer> token : document.entrySet()) {
@@ -163,16 +242,13 @@ public class VSM {
      * @param document document
      * @return TFIDF Matrix
      */
-    public HashMap<String, Double> createTFIDFDocumentQueryMatrix(Set uniqueKeySets, HashMap<String, Integer> document) {
+    public HashMap<String, Double> createTFIDFDocumentQueryMatrix(Set uniqueKeySets, Map<String, Integer> document) {
         HashMap<String, Double> tfIDFDictionary = new HashMap<>();
 
         for(Object object : uniqueKeySets) {
             String key = (String) object;
 
-            double idf = 0.0;
-            if (invertedDictionary.containsKey(key)) {
-                idf = invertedDictionary.get(key);
-            }
+            double idf = statistics.getInverseDocumentFrequency(key);
 
             double tfidf = 0.0;
             for(Map.Entry<String, Integer> termsEntry : document.entrySet()) {
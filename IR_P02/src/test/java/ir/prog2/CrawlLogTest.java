@@ -0,0 +1,108 @@
+package ir.prog2;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CrawlLogTest {
+
+    private static final String SEED = "http://example.com";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void newLogStartsAtTheSeed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("crawl.log");
+
+        assertFalse(CrawlLog.isResumable(file, SEED, 2));
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            assertEquals(0, log.getDepth());
+            assertEquals(Collections.singletonList(SEED), log.getFrontier());
+            assertTrue(log.getVisited().contains(SEED));
+            assertEquals(0, log.getIndexedCount());
+        }
+        assertTrue(CrawlLog.isResumable(file, SEED, 2));
+        assertFalse(CrawlLog.isResumable(file, SEED, 3));
+        assertFalse(CrawlLog.isResumable(file, "http://example.org", 2));
+    }
+
+    @Test
+    public void replaysTheLastStartedDepth() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("crawl.log");
+
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            log.fetched(SEED, true, 42L, Arrays.asList(SEED + "/a", SEED + "/b"));
+            log.flush();
+            log.startDepth(1, Arrays.asList(SEED + "/a", SEED + "/b"));
+            log.fetched(SEED + "/a", true, 7L, Arrays.asList(SEED + "/c"));
+            log.fetched(SEED + "/b", false, 42L, Collections.<String>emptyList());
+            log.flush();
+        }
+
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            assertEquals(1, log.getDepth());
+            assertEquals(Arrays.asList(SEED + "/a", SEED + "/b"), log.getFrontier());
+            assertEquals(3, log.getVisited().size());
+            assertTrue(log.getVisited().contains(SEED + "/b"));
+            assertFalse(log.getVisited().contains(SEED + "/c"));
+
+            // near-duplicates are logged but not counted or hashed
+            assertEquals(2, log.getIndexedCount());
+            assertEquals(Arrays.asList(42L, 7L), log.getSimHashes());
+            assertEquals(Arrays.asList(SEED + "/c"), log.getFetched(SEED + "/a").getLinks());
+            assertEquals(Collections.<String>emptyList(), log.getFetched(SEED + "/b").getLinks());
+            assertNull(log.getFetched(SEED + "/c"));
+        }
+    }
+
+    @Test
+    public void ignoresRecordsCutOffByACrash() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("crawl.log");
+
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            log.fetched(SEED, true, 42L, Arrays.asList(SEED + "/a"));
+            log.flush();
+        }
+        // the D records of depth 1 without their S record, then half a record
+        Files.write(file, ("D\t1\t" + SEED + "/a\nF\t" + SEED + "/a\ttr").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            assertEquals(0, log.getDepth());
+            assertEquals(Collections.singletonList(SEED), log.getFrontier());
+            assertFalse(log.getVisited().contains(SEED + "/a"));
+            assertEquals(1, log.getIndexedCount());
+            assertNull(log.getFetched(SEED + "/a"));
+        }
+    }
+
+    @Test
+    public void finishedLogIsNotResumed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("crawl.log");
+
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            log.fetched(SEED, true, 42L, Collections.<String>emptyList());
+            log.finish();
+        }
+        assertFalse(CrawlLog.isResumable(file, SEED, 2));
+
+        try (CrawlLog log = new CrawlLog(file, SEED, 2)) {
+            assertEquals(0, log.getIndexedCount());
+            assertNull(log.getFetched(SEED));
+        }
+    }
+}
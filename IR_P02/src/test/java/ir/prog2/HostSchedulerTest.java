@@ -0,0 +1,69 @@
+package ir.prog2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HostSchedulerTest {
+
+    private static final long DELAY_MS = 200;
+
+    private final ConcurrentHashMap<String, Long> starts = new ConcurrentHashMap<>();
+    private final HostScheduler.Fetcher<String> fetcher = new HostScheduler.Fetcher<String>() {
+        @Override
+        public String fetch(String url) {
+            starts.put(url, System.nanoTime());
+            return url.toUpperCase();
+        }
+    };
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void startExecutor() {
+        // a single fetcher thread, waiting for a host would hold up every other host
+        executor = Executors.newScheduledThreadPool(1);
+    }
+
+    @After
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void requestsToAHostStartTheDelayApart() throws InterruptedException, ExecutionException {
+        List<String> urls = Arrays.asList("http://a.test/1", "http://a.test/2", "http://a.test/3");
+
+        List<String> results = new HostScheduler(1, DELAY_MS, DELAY_MS, false).fetchAll(urls, executor, fetcher);
+
+        assertEquals(Arrays.asList("HTTP://A.TEST/1", "HTTP://A.TEST/2", "HTTP://A.TEST/3"), results);
+        assertTrue(millisBetween("http://a.test/1", "http://a.test/2") >= DELAY_MS);
+        assertTrue(millisBetween("http://a.test/2", "http://a.test/3") >= DELAY_MS);
+    }
+
+    @Test
+    public void waitingHostDoesNotHoldTheFetcherThreads() throws InterruptedException, ExecutionException {
+        List<String> urls = Arrays.asList("http://a.test/1", "http://a.test/2", "http://a.test/3", "http://b.test/1");
+
+        new HostScheduler(1, DELAY_MS, DELAY_MS, false).fetchAll(urls, executor, fetcher);
+
+        // the other host is fetched while the first one waits for its next turn
+        assertTrue(starts.get("http://b.test/1") < starts.get("http://a.test/2"));
+        assertTrue(millisBetween("http://a.test/1", "http://b.test/1") < DELAY_MS);
+    }
+
+    private long millisBetween(String first, String second) {
+        return TimeUnit.NANOSECONDS.toMillis(starts.get(second) - starts.get(first));
+    }
+}
@@ -0,0 +1,79 @@
+package ir.prog2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RobotsRulesTest {
+
+    @Test
+    public void pathsWithoutRuleAreAllowed() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /private\n");
+
+        assertTrue(rules.isAllowed("/"));
+        assertTrue(rules.isAllowed(""));
+        assertTrue(rules.isAllowed("/public/page.html"));
+        assertFalse(rules.isAllowed("/private"));
+        assertFalse(rules.isAllowed("/private/page.html?id=1"));
+        assertTrue(RobotsRules.ALLOW_ALL.isAllowed("/private"));
+    }
+
+    @Test
+    public void longestRuleWinsAndAllowWinsTie() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\n"
+                + "Disallow: /docs\n"
+                + "Allow: /docs/public\n"
+                + "Disallow: /page\n"
+                + "Allow: /page\n");
+
+        assertFalse(rules.isAllowed("/docs/private.html"));
+        assertTrue(rules.isAllowed("/docs/public/index.html"));
+        assertTrue(rules.isAllowed("/page.html"));
+    }
+
+    @Test
+    public void wildcardsAndEndAnchor() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\n"
+                + "Disallow: /*.pdf$\n"
+                + "Disallow: /search*q=\n");
+
+        assertFalse(rules.isAllowed("/files/report.pdf"));
+        assertTrue(rules.isAllowed("/files/report.pdf.html"));
+        assertFalse(rules.isAllowed("/search?lang=en&q=lucene"));
+        assertTrue(rules.isAllowed("/search?lang=en"));
+    }
+
+    @Test
+    public void onlyGroupsOfEveryUserAgentApply() {
+        RobotsRules rules = RobotsRules.parse("# comment\n"
+                + "User-agent: Googlebot\n"
+                + "Disallow: /google\n"
+                + "\n"
+                + "User-agent: Bingbot\n"
+                + "User-agent: *\n"
+                + "Disallow: /all # trailing comment\n"
+                + "Crawl-delay: 2.5\n"
+                + "\n"
+                + "User-agent: Other\n"
+                + "Disallow: /other\n"
+                + "Crawl-delay: 60\n");
+
+        assertTrue(rules.isAllowed("/google"));
+        assertFalse(rules.isAllowed("/all"));
+        assertTrue(rules.isAllowed("/other"));
+        assertEquals(2500L, rules.getCrawlDelayMillis());
+    }
+
+    @Test
+    public void malformedLinesAreIgnored() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\r\n"
+                + "Disallow\r\n"
+                + "Disallow:\r\n"
+                + "Crawl-delay: soon\r\n");
+
+        assertTrue(rules.isAllowed("/"));
+        assertEquals(0L, rules.getCrawlDelayMillis());
+    }
+}
@@ -0,0 +1,67 @@
+package ir.prog2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimHashTest {
+
+    private static final String PAGE = "the crawler fetches the pages of the frontier and hands them to the indexer "
+            + "which adds their title and contents to the index and commits it every hundred pages "
+            + "so an interrupted crawl resumes from the last commit without fetching the pages again "
+            + "while the fetcher threads wait between the requests to a host";
+
+    @Test
+    public void equalTextsHaveEqualHashes() {
+        assertEquals(SimHash.hash(PAGE, 3), SimHash.hash("  " + PAGE.replace(" ", "\n ") + "\t", 3));
+        assertNotEquals(0L, SimHash.hash(PAGE, 3));
+    }
+
+    @Test
+    public void shortTextsHaveNoHash() {
+        assertEquals(0L, SimHash.hash("", 3));
+        assertEquals(0L, SimHash.hash("two words", 3));
+        assertNotEquals(0L, SimHash.hash("three whole words", 3));
+    }
+
+    @Test
+    public void distanceCountsDifferentBits() {
+        assertEquals(0, SimHash.distance(0x5L, 0x5L));
+        assertEquals(2, SimHash.distance(0x5L, 0x6L));
+        assertEquals(64, SimHash.distance(0L, -1L));
+    }
+
+    @Test
+    public void nearDuplicatesAreNotAdded() {
+        SimHash simHash = new SimHash(3, 3);
+        long hash = simHash.getHash(PAGE);
+
+        assertTrue(simHash.add(hash));
+        assertFalse(simHash.add(hash));
+        // within the distance on any bits, each block of the hash is flipped once
+        assertFalse(simHash.add(hash ^ 0x1L ^ (1L << 20) ^ (1L << 63)));
+        assertFalse(simHash.add(hash ^ (1L << 17) ^ (1L << 33) ^ (1L << 49)));
+        assertTrue(simHash.add(hash ^ 0xfL));
+    }
+
+    @Test
+    public void differentPagesAreAdded() {
+        SimHash simHash = new SimHash(3, 3);
+
+        assertTrue(simHash.add(PAGE));
+        assertFalse(simHash.add(PAGE));
+        assertTrue(simHash.add("a search server answers the queries of the users with the best ranked pages "
+                + "of the index reading the statistics of the terms from a memory mapped file"));
+        // too short to be compared
+        assertTrue(simHash.add("short page"));
+        assertTrue(simHash.add("short page"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void distanceOfFourBlocksIsAtMostThree() {
+        new SimHash(4, 3);
+    }
+}
@@ -0,0 +1,146 @@
+package ir.prog2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Crawls a small site served on the loopback interface.
+ */
+public class URLIndexerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, String> site = new HashMap<>();
+    private HttpServer server;
+    private String root;
+
+    private long crawlDelay;
+    private boolean crawlRobots;
+
+    @Before
+    public void startServer() throws IOException {
+        crawlDelay = LuceneConstants.CRAWL_DELAY_MS;
+        crawlRobots = LuceneConstants.CRAWL_ROBOTS;
+        LuceneConstants.CRAWL_DELAY_MS = 0;
+
+        // index -> a, b, missing -> c, d, private, mirror of a -> e (below the crawl depth)
+        site.put("/index.html", page("Home", "the home page of the test site links to the articles about crawling", "a.html", "b.html", "missing.html"));
+        site.put("/a.html", page("Crawling", "a crawler fetches pages breadth first from the seeder url", "c.html", "index.html", "private.html"));
+        site.put("/b.html", page("Indexing", "the indexer adds the title and the contents of every page to the index", "c.html", "d.html", "mirror.html"));
+        site.put("/c.html", page("Politeness", "requests to a host start at least the crawl delay apart", "e.html"));
+        site.put("/d.html", page("Robots", "urls disallowed by the robots file of a host are not fetched", "a.html"));
+        site.put("/e.html", page("Ranking", "pages are ranked by the cosine similarity or by okapi bm25"));
+        site.put("/private.html", page("Private", "this page is disallowed for every crawler"));
+        site.put("/mirror.html", site.get("/a.html"));
+        site.put("/robots.txt", "User-agent: *\nDisallow: /private\n");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = site.get(exchange.getRequestURI().getPath());
+                byte[] bytes = (body == null ? "Not Found" : body).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type",
+                        exchange.getRequestURI().getPath().endsWith(".txt") ? "text/plain" : "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(body == null ? 404 : 200, bytes.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(bytes);
+                }
+            }
+        });
+        server.start();
+        root = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        LuceneConstants.CRAWL_DELAY_MS = crawlDelay;
+        LuceneConstants.CRAWL_ROBOTS = crawlRobots;
+    }
+
+    @Test
+    public void crawlsUpToTheDepth() throws IOException {
+        LuceneConstants.CRAWL_ROBOTS = true;
+
+        File indexDir = new File(folder.getRoot(), "index");
+        new URLIndexer(2, root + "/index.html").startFetchingAndIndexing(indexDir.getPath());
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put(root + "/index.html", 0);
+        expected.put(root + "/a.html", 1);
+        expected.put(root + "/b.html", 1);
+        expected.put(root + "/c.html", 2);
+        expected.put(root + "/d.html", 2);
+        assertEquals(expected, readPages(indexDir));
+    }
+
+    @Test
+    public void crawlsDisallowedUrlsWithoutRobots() throws IOException {
+        LuceneConstants.CRAWL_ROBOTS = false;
+
+        File indexDir = new File(folder.getRoot(), "index");
+        new URLIndexer(2, root + "/index.html").startFetchingAndIndexing(indexDir.getPath());
+
+        Map<String, Integer> pages = readPages(indexDir);
+        assertEquals(Integer.valueOf(2), pages.get(root + "/private.html"));
+        assertEquals(6, pages.size());
+    }
+
+    @Test
+    public void recrawlStartsOver() throws IOException {
+        LuceneConstants.CRAWL_ROBOTS = true;
+
+        File indexDir = new File(folder.getRoot(), "index");
+        new URLIndexer(1, root + "/index.html").startFetchingAndIndexing(indexDir.getPath());
+        new URLIndexer(1, root + "/index.html").startFetchingAndIndexing(indexDir.getPath());
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put(root + "/index.html", 0);
+        expected.put(root + "/a.html", 1);
+        expected.put(root + "/b.html", 1);
+        assertEquals(expected, readPages(indexDir));
+    }
+
+    /**
+     * @return depths of the indexed urls, in the order of pages.txt
+     */
+    private static Map<String, Integer> readPages(File indexDir) throws IOException {
+        Map<String, Integer> pages = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(new File(indexDir, "pages.txt").toPath(), StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            assertEquals("url\tdepth: " + line, 2, fields.length);
+            assertEquals("indexed once: " + fields[0], null, pages.put(fields[0], Integer.parseInt(fields[1])));
+        }
+        return pages;
+    }
+
+    private static String page(String title, String text, String... links) {
+        StringBuilder html = new StringBuilder("<html><head><title>").append(title).append("</title></head><body><p>")
+                .append(text).append("</p>");
+        for (String link : links) {
+            html.append("<a href=\"").append(link).append("\">").append(link).append("</a>");
+        }
+        return html.append("</body></html>").toString();
+    }
+}